@@ -0,0 +1,62 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.bridge.cbor;
+
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import net.clydo.jedis.messaging.bridge.jackson.JacksonDataBridge;
+import net.clydo.jedis.messaging.packet.Packet;
+
+/**
+ * Jackson bridge that encodes payloads as CBOR.
+ * <p>
+ * CBOR payloads cannot be embedded in JSON packets, so this bridge only works with binary packets,
+ * see {@code JedisMessaging.Builder#binaryPackets(boolean)}. Building an instance without them fails.
+ */
+public class CborDataBridge extends JacksonDataBridge {
+
+    public CborDataBridge() {
+        this(new CBORMapper());
+    }
+
+    public CborDataBridge(final CBORMapper mapper) {
+        super(mapper);
+    }
+
+    @Override
+    public boolean supportsJsonPackets() {
+        return false;
+    }
+
+    @Override
+    public byte[] encodePacketBytes(Packet<byte[]> src) {
+        throw unsupported();
+    }
+
+    @Override
+    public Packet<byte[]> decodePacketBytes(byte[] bytes) {
+        throw unsupported();
+    }
+
+    private static UnsupportedOperationException unsupported() {
+        return new UnsupportedOperationException("CborDataBridge needs binary packets");
+    }
+}
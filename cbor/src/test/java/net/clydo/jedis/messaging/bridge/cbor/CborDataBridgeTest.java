@@ -0,0 +1,34 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.bridge.cbor;
+
+import net.clydo.jedis.messaging.bridge.DataBridge;
+import net.clydo.jedis.messaging.bridge.DataBridgeConformance;
+
+class CborDataBridgeTest extends DataBridgeConformance<byte[]> {
+    private final DataBridge<byte[]> bridge = new CborDataBridge();
+
+    @Override
+    protected DataBridge<byte[]> bridge() {
+        return this.bridge;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.bridge.jackson;
+
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import net.clydo.jedis.messaging.bridge.DataBridge;
+import net.clydo.jedis.messaging.packet.Packet;
+import net.clydo.jedis.messaging.packet.PacketCodec;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Jackson bridge whose payloads are the encoded bytes of the data.
+ * <p>
+ * Data is serialized once when it is published and bound to a type with the {@link ObjectMapper}
+ * when a listener asks for it. Packets use the same JSON layout as the Gson bridges.
+ */
+@RequiredArgsConstructor
+public class JacksonDataBridge implements DataBridge<byte[]> {
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    protected final ObjectMapper mapper;
+
+    public JacksonDataBridge() {
+        this(new ObjectMapper());
+    }
+
+    @Override
+    public <T> T dataAs(byte[] data, Class<T> as) {
+        if (data == null) {
+            return null;
+        }
+        if (as == byte[].class) {
+            return as.cast(data);
+        }
+        try {
+            return this.mapper.readValue(data, as);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public byte[] encodeData(Object src) {
+        try {
+            return this.mapper.writeValueAsBytes(src);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String encodePacket(Packet<byte[]> src) {
+        return new String(this.encodePacketBytes(src), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Packet<byte[]> decodePacket(String data) {
+        return this.decodePacketBytes(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public byte[] encodePacketBytes(Packet<byte[]> src) {
+        val out = new ByteArrayBuilder(INITIAL_BUFFER_SIZE);
+        try (val generator = this.mapper.getFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            if (src.signature() != null) {
+                generator.writeStringField("signature", src.signature());
+            }
+            generator.writeNumberField("type", src.type());
+            if (src.event() != null) {
+                generator.writeStringField("event", src.event());
+            }
+            if (src.data() != null) {
+                generator.writeFieldName("data");
+                generator.writeRawValue(new RawUtf8Value(src.data()));
+            }
+            generator.writeNumberField("callbackId", src.callbackId());
+            generator.writeBooleanField("skipSelf", src.skipSelf());
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public Packet<byte[]> decodePacketBytes(byte[] bytes) {
+        val packet = PacketCodec.readJsonEnvelope(this, bytes);
+        if (packet == null) {
+            throw new IllegalArgumentException("Malformed packet");
+        }
+        return packet.toPacket();
+    }
+
+    @Override
+    public boolean supportsBinaryPackets() {
+        return true;
+    }
+
+    @Override
+    public byte[] encodeDataBytes(byte[] data) {
+        return data != null ? data : this.encodeData(null);
+    }
+
+    @Override
+    public byte[] decodeData(byte[] bytes, int offset, int length) {
+        return Arrays.copyOfRange(bytes, offset, offset + length);
+    }
+
+}
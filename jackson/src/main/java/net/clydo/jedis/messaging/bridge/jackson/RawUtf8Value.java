@@ -0,0 +1,124 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.bridge.jackson;
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encoded JSON that {@link com.fasterxml.jackson.core.JsonGenerator#writeRawValue(SerializableString)} copies
+ * into a UTF-8 generator as is. Only character based generators decode it.
+ */
+final class RawUtf8Value implements SerializableString {
+    private final byte[] bytes;
+    private SerializedString decoded;
+
+    RawUtf8Value(final byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    private SerializedString decoded() {
+        if (this.decoded == null) {
+            this.decoded = new SerializedString(new String(this.bytes, StandardCharsets.UTF_8));
+        }
+        return this.decoded;
+    }
+
+    @Override
+    public String getValue() {
+        return this.decoded().getValue();
+    }
+
+    @Override
+    public int charLength() {
+        return this.decoded().charLength();
+    }
+
+    @Override
+    public char[] asQuotedChars() {
+        return this.decoded().asQuotedChars();
+    }
+
+    @Override
+    public byte[] asUnquotedUTF8() {
+        return this.bytes;
+    }
+
+    @Override
+    public byte[] asQuotedUTF8() {
+        return this.decoded().asQuotedUTF8();
+    }
+
+    @Override
+    public int appendQuotedUTF8(final byte[] buffer, final int offset) {
+        return this.decoded().appendQuotedUTF8(buffer, offset);
+    }
+
+    @Override
+    public int appendQuoted(final char[] buffer, final int offset) {
+        return this.decoded().appendQuoted(buffer, offset);
+    }
+
+    @Override
+    public int appendUnquotedUTF8(final byte[] buffer, final int offset) {
+        if (offset + this.bytes.length > buffer.length) {
+            return -1;
+        }
+        System.arraycopy(this.bytes, 0, buffer, offset, this.bytes.length);
+        return this.bytes.length;
+    }
+
+    @Override
+    public int appendUnquoted(final char[] buffer, final int offset) {
+        return this.decoded().appendUnquoted(buffer, offset);
+    }
+
+    @Override
+    public int writeQuotedUTF8(final OutputStream out) throws IOException {
+        return this.decoded().writeQuotedUTF8(out);
+    }
+
+    @Override
+    public int writeUnquotedUTF8(final OutputStream out) throws IOException {
+        out.write(this.bytes);
+        return this.bytes.length;
+    }
+
+    @Override
+    public int putQuotedUTF8(final ByteBuffer buffer) throws IOException {
+        return this.decoded().putQuotedUTF8(buffer);
+    }
+
+    @Override
+    public int putUnquotedUTF8(final ByteBuffer buffer) throws IOException {
+        if (this.bytes.length > buffer.remaining()) {
+            return -1;
+        }
+        buffer.put(this.bytes);
+        return this.bytes.length;
+    }
+}
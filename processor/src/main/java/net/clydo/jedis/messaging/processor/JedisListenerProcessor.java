@@ -0,0 +1,282 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.processor;
+
+import lombok.val;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generates a {@code JedisDispatcher} for every class declaring {@code @JedisEvent} methods.
+ * <p>
+ * Listener signatures are checked here, so mistakes that {@code subscribeFrom} would only log at
+ * runtime fail the build instead. The generated dispatchers are registered as services, which is
+ * how {@code subscribeFrom} finds them.
+ */
+@SupportedAnnotationTypes(JedisListenerProcessor.JEDIS_EVENT)
+public class JedisListenerProcessor extends AbstractProcessor {
+    static final String JEDIS_EVENT = "net.clydo.jedis.messaging.annotations.JedisEvent";
+    static final String JEDIS_CHANNELS = "net.clydo.jedis.messaging.annotations.JedisChannels";
+    private static final String SEND_CALLBACK = "net.clydo.jedis.messaging.callback.SendCallback";
+    private static final String PACKET_DATA = "net.clydo.jedis.messaging.packet.PacketData";
+    private static final String DISPATCHER = "net.clydo.jedis.messaging.listener.JedisDispatcher";
+    private static final String DISPATCHER_SUFFIX = "$JedisDispatcher";
+
+    private final Set<String> dispatchers = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            this.writeServices();
+            return false;
+        }
+
+        val jedisEvent = this.processingEnv.getElementUtils().getTypeElement(JEDIS_EVENT);
+        if (jedisEvent == null) {
+            return false;
+        }
+
+        val holders = new LinkedHashMap<TypeElement, List<ExecutableElement>>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(jedisEvent)) {
+            if (element.getKind() == ElementKind.METHOD) {
+                holders.computeIfAbsent((TypeElement) element.getEnclosingElement(), holder -> new ArrayList<>()).add((ExecutableElement) element);
+            }
+        }
+
+        for (Map.Entry<TypeElement, List<ExecutableElement>> entry : holders.entrySet()) {
+            this.generate(entry.getKey(), entry.getValue());
+        }
+        return false;
+    }
+
+    private void generate(final TypeElement holder, final List<ExecutableElement> methods) {
+        val messager = this.processingEnv.getMessager();
+        val classChannels = this.findAnnotation(holder, JEDIS_CHANNELS);
+
+        var valid = true;
+        val registrations = new StringBuilder();
+        for (ExecutableElement method : methods) {
+            if (!this.validateSignature(method)) {
+                valid = false;
+                continue;
+            }
+
+            val methodChannels = this.findAnnotation(method, JEDIS_CHANNELS);
+            val channels = methodChannels != null ? methodChannels : classChannels;
+            if (channels == null) {
+                messager.printMessage(Diagnostic.Kind.WARNING, "@JedisEvent method has no @JedisChannels on it or its class and is ignored", method);
+                continue;
+            }
+
+            if (method.getModifiers().contains(Modifier.PRIVATE)) {
+                messager.printMessage(Diagnostic.Kind.WARNING, "Private @JedisEvent methods cannot be called by a generated dispatcher, "
+                        + holder.getSimpleName() + " is subscribed by reflection", method);
+                return;
+            }
+
+            val dataType = method.getParameters().get(1).asType();
+            val invoker = method.getModifiers().contains(Modifier.STATIC) ? this.canonicalName(holder) : "listeners";
+            registrations.append("        registrar.subscribe((channel, data, sender) -> ")
+                    .append(invoker).append('.').append(method.getSimpleName())
+                    .append("(channel, ").append(this.dataExpression(dataType)).append(", sender), ")
+                    .append(this.literal(this.annotationValue(this.findAnnotation(method, JEDIS_EVENT), "value"))).append(", ")
+                    .append(this.annotationValue(channels, "pattern")).append(", ")
+                    .append(this.channelsExpression(channels)).append(");\n");
+        }
+
+        if (!valid) {
+            return;
+        }
+        if (!this.isAccessible(holder)) {
+            messager.printMessage(Diagnostic.Kind.WARNING, "Private, local and anonymous classes cannot have a generated dispatcher, "
+                    + holder.getSimpleName() + " is subscribed by reflection", holder);
+            return;
+        }
+
+        this.writeDispatcher(holder, registrations);
+    }
+
+    private boolean validateSignature(final ExecutableElement method) {
+        val parameters = method.getParameters();
+        if (parameters.size() == 3
+                && this.isType(parameters.get(0).asType(), String.class.getName())
+                && this.isType(parameters.get(2).asType(), SEND_CALLBACK)) {
+            return true;
+        }
+
+        this.processingEnv.getMessager().printMessage(
+                Diagnostic.Kind.ERROR,
+                "@JedisEvent methods must have exactly 3 parameters: String, the payload type, SendCallback",
+                method
+        );
+        return false;
+    }
+
+    private String dataExpression(final TypeMirror dataType) {
+        val types = this.processingEnv.getTypeUtils();
+        if (dataType.getKind() == TypeKind.DECLARED && this.isType(types.erasure(dataType), PACKET_DATA)) {
+            return "(" + PACKET_DATA + ") data";
+        }
+        return "data.as(" + types.erasure(dataType) + ".class)";
+    }
+
+    private String channelsExpression(final AnnotationMirror channels) {
+        val value = channels.getElementValues().entrySet().stream()
+                .filter(entry -> entry.getKey().getSimpleName().contentEquals("value"))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(null);
+
+        val builder = new StringBuilder();
+        if (value != null && value.getValue() instanceof List<?> list) {
+            for (Object channel : list) {
+                if (!builder.isEmpty()) {
+                    builder.append(", ");
+                }
+                builder.append(this.literal(((AnnotationValue) channel).getValue()));
+            }
+        } else if (value != null) {
+            builder.append(this.literal(value.getValue()));
+        }
+        return builder.toString();
+    }
+
+    private void writeDispatcher(final TypeElement holder, final CharSequence registrations) {
+        val elements = this.processingEnv.getElementUtils();
+        val packageName = elements.getPackageOf(holder).getQualifiedName().toString();
+        val binaryName = elements.getBinaryName(holder).toString();
+        val simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)) + DISPATCHER_SUFFIX;
+        val holderType = this.canonicalName(holder);
+
+        val source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("@javax.annotation.processing.Generated(\"").append(JedisListenerProcessor.class.getName()).append("\")\n")
+                .append("public final class ").append(simpleName).append(" implements ").append(DISPATCHER).append('<').append(holderType).append("> {\n\n")
+                .append("    @Override\n")
+                .append("    public Class<").append(holderType).append("> listenerType() {\n")
+                .append("        return ").append(holderType).append(".class;\n")
+                .append("    }\n\n")
+                .append("    @Override\n")
+                .append("    @SuppressWarnings({\"unchecked\", \"rawtypes\"})\n")
+                .append("    public <D> void register(").append(holderType).append(" listeners, ").append(DISPATCHER).append(".Registrar<D> registrar) {\n")
+                .append(registrations)
+                .append("    }\n")
+                .append("}\n");
+
+        val qualifiedName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+        try (Writer writer = this.processingEnv.getFiler().createSourceFile(qualifiedName, holder).openWriter()) {
+            writer.write(source.toString());
+        } catch (IOException e) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to write " + qualifiedName + ": " + e.getMessage(), holder);
+            return;
+        }
+        this.dispatchers.add(qualifiedName);
+    }
+
+    private void writeServices() {
+        if (this.dispatchers.isEmpty()) {
+            return;
+        }
+
+        try (Writer writer = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", "META-INF/services/" + DISPATCHER).openWriter()) {
+            for (String dispatcher : this.dispatchers) {
+                writer.write(dispatcher);
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to register the generated dispatchers: " + e.getMessage());
+        }
+    }
+
+    private boolean isAccessible(final TypeElement holder) {
+        Element element = holder;
+        while (element instanceof TypeElement type) {
+            if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS
+                    || type.getModifiers().contains(Modifier.PRIVATE)) {
+                return false;
+            }
+            element = element.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private boolean isType(final TypeMirror type, final String qualifiedName) {
+        val element = this.processingEnv.getElementUtils().getTypeElement(qualifiedName);
+        return element != null && this.processingEnv.getTypeUtils().isSameType(this.processingEnv.getTypeUtils().erasure(type), this.processingEnv.getTypeUtils().erasure(element.asType()));
+    }
+
+    private String canonicalName(final TypeElement type) {
+        return this.processingEnv.getTypeUtils().erasure(type.asType()).toString();
+    }
+
+    private AnnotationMirror findAnnotation(final Element element, final String annotationType) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationType)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private Object annotationValue(final AnnotationMirror annotation, final String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : this.processingEnv.getElementUtils().getElementValuesWithDefaults(annotation).entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    private String literal(final Object value) {
+        return this.processingEnv.getElementUtils().getConstantExpression(value);
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.processor;
+
+import com.google.gson.Gson;
+import net.clydo.jedis.messaging.bridge.gson.GsonDataBridge;
+import net.clydo.jedis.messaging.listener.JedisDispatcher;
+import net.clydo.jedis.messaging.listener.JedisDispatchers;
+import net.clydo.jedis.messaging.listener.Listener;
+import net.clydo.jedis.messaging.packet.LazyPacket;
+import net.clydo.jedis.messaging.packet.PacketData;
+import net.clydo.jedis.messaging.packet.PacketType;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JedisListenerProcessorTest {
+    private static final String IMPORTS = """
+            package sample;
+
+            import net.clydo.jedis.messaging.annotations.JedisChannels;
+            import net.clydo.jedis.messaging.annotations.JedisEvent;
+            import net.clydo.jedis.messaging.callback.SendCallback;
+            import net.clydo.jedis.messaging.packet.PacketData;
+
+            """;
+    private static final String SERVICES = "META-INF/services/" + JedisDispatcher.class.getName();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void generatesAndRegistersDispatcher() throws Exception {
+        final var compilation = this.compile("sample.Listeners", IMPORTS + """
+                @JedisChannels("players")
+                public class Listeners {
+                    public static final java.util.List<String> CALLS = new java.util.ArrayList<>();
+
+                    @JedisEvent("join")
+                    public void join(String channel, String name, SendCallback sender) {
+                        CALLS.add("join:" + channel + ":" + name);
+                    }
+
+                    @JedisEvent("quit")
+                    @JedisChannels(value = {"players.*", "admins.*"}, pattern = true)
+                    static void quit(String channel, PacketData<?> data, SendCallback sender) {
+                        CALLS.add("quit:" + channel + ":" + data.as(String.class));
+                    }
+                }
+                """);
+
+        assertTrue(compilation.success(), compilation::toString);
+        assertTrue(compilation.diagnostics(Diagnostic.Kind.WARNING).isEmpty(), compilation::toString);
+        assertTrue(Files.exists(this.directory.resolve("generated/sample/Listeners$JedisDispatcher.java")));
+        assertEquals(List.of("sample.Listeners$JedisDispatcher"), compilation.services());
+
+        try (final var loader = compilation.classLoader()) {
+            final var holder = loader.loadClass("sample.Listeners");
+            final var registrations = register(holder);
+
+            assertEquals(List.of("join false [players]", "quit true [players.*, admins.*]"), new ArrayList<>(registrations.keySet()));
+            registrations.get("join false [players]").call("players", data("Steve"), null);
+            registrations.get("quit true [players.*, admins.*]").call("players.eu", data("Alex"), null);
+            assertEquals(List.of("join:players:Steve", "quit:players.eu:Alex"), holder.getField("CALLS").get(null));
+        }
+    }
+
+    @Test
+    void generatesDispatcherForNestedClasses() throws Exception {
+        final var compilation = this.compile("sample.Outer", IMPORTS + """
+                public class Outer {
+                    @JedisChannels("inner")
+                    public static class Inner {
+                        @JedisEvent("event")
+                        public void on(String channel, PacketData<?> data, SendCallback sender) {
+                        }
+                    }
+                }
+                """);
+
+        assertTrue(compilation.success(), compilation::toString);
+        assertEquals(List.of("sample.Outer$Inner$JedisDispatcher"), compilation.services());
+        try (final var loader = compilation.classLoader()) {
+            assertEquals(List.of("event false [inner]"), new ArrayList<>(register(loader.loadClass("sample.Outer$Inner")).keySet()));
+        }
+    }
+
+    @Test
+    void rejectsBadSignatures() throws Exception {
+        for (final var parameters : List.of(
+                "String channel, String data",
+                "Object channel, String data, SendCallback sender",
+                "String channel, String data, Runnable sender",
+                "String channel, String data, SendCallback sender, int extra"
+        )) {
+            final var compilation = this.compile("sample.Bad", IMPORTS + """
+                    @JedisChannels("channel")
+                    public class Bad {
+                        @JedisEvent("event")
+                        public void on(%s) {
+                        }
+                    }
+                    """.formatted(parameters));
+
+            assertFalse(compilation.success(), parameters);
+            final var errors = compilation.diagnostics(Diagnostic.Kind.ERROR);
+            assertEquals(1, errors.size(), compilation::toString);
+            assertTrue(errors.get(0).contains("exactly 3 parameters"), errors::toString);
+            assertFalse(Files.exists(this.directory.resolve("generated/sample/Bad$JedisDispatcher.java")));
+            assertNull(compilation.services());
+        }
+    }
+
+    @Test
+    void fallsBackToReflectionForPrivateMethods() throws Exception {
+        final var compilation = this.compile("sample.Hidden", IMPORTS + """
+                @JedisChannels("channel")
+                public class Hidden {
+                    @JedisEvent("visible")
+                    public void visible(String channel, String data, SendCallback sender) {
+                    }
+
+                    @JedisEvent("hidden")
+                    private void hidden(String channel, String data, SendCallback sender) {
+                    }
+                }
+                """);
+
+        assertTrue(compilation.success(), compilation::toString);
+        final var warnings = compilation.diagnostics(Diagnostic.Kind.WARNING);
+        assertEquals(1, warnings.size(), compilation::toString);
+        assertTrue(warnings.get(0).contains("Hidden is subscribed by reflection"), warnings::toString);
+        assertNull(compilation.services());
+        try (final var loader = compilation.classLoader()) {
+            assertNull(JedisDispatchers.find(loader.loadClass("sample.Hidden")));
+        }
+    }
+
+    @Test
+    void fallsBackToReflectionForPrivateClasses() throws Exception {
+        final var compilation = this.compile("sample.Host", IMPORTS + """
+                public class Host {
+                    @JedisChannels("channel")
+                    private static class Secret {
+                        @JedisEvent("event")
+                        public void on(String channel, String data, SendCallback sender) {
+                        }
+                    }
+                }
+                """);
+
+        assertTrue(compilation.success(), compilation::toString);
+        final var warnings = compilation.diagnostics(Diagnostic.Kind.WARNING);
+        assertEquals(1, warnings.size(), compilation::toString);
+        assertTrue(warnings.get(0).contains("Secret is subscribed by reflection"), warnings::toString);
+        assertNull(compilation.services());
+    }
+
+    @Test
+    void warnsAboutMethodsWithoutChannels() throws Exception {
+        final var compilation = this.compile("sample.Unbound", IMPORTS + """
+                public class Unbound {
+                    @JedisEvent("bound")
+                    @JedisChannels("channel")
+                    public void bound(String channel, String data, SendCallback sender) {
+                    }
+
+                    @JedisEvent("unbound")
+                    public void unbound(String channel, String data, SendCallback sender) {
+                    }
+                }
+                """);
+
+        assertTrue(compilation.success(), compilation::toString);
+        final var warnings = compilation.diagnostics(Diagnostic.Kind.WARNING);
+        assertEquals(1, warnings.size(), compilation::toString);
+        assertTrue(warnings.get(0).contains("no @JedisChannels"), warnings::toString);
+        try (final var loader = compilation.classLoader()) {
+            assertEquals(List.of("bound false [channel]"), new ArrayList<>(register(loader.loadClass("sample.Unbound")).keySet()));
+        }
+    }
+
+    private Compilation compile(final String className, final String source) throws IOException {
+        final var classes = Files.createDirectories(this.directory.resolve("classes"));
+        final var generated = Files.createDirectories(this.directory.resolve("generated"));
+        final var compiler = ToolProvider.getSystemJavaCompiler();
+        final var diagnostics = new DiagnosticCollector<JavaFileObject>();
+        final var file = new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(final boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        final var task = compiler.getTask(null, null, diagnostics, List.of(
+                "-classpath", classPath(),
+                "-d", classes.toString(),
+                "-s", generated.toString(),
+                "-Xlint:-options"
+        ), null, List.of(file));
+        task.setProcessors(List.of(new JedisListenerProcessor()));
+        final var success = task.call();
+
+        return new Compilation(success, diagnostics.getDiagnostics(), classes);
+    }
+
+    private static String classPath() {
+        final var entries = new LinkedHashSet<String>();
+        // The launcher may not list the library on the class path property, so add where its classes come from.
+        for (final var type : List.of(JedisDispatcher.class, NotNull.class)) {
+            try {
+                entries.add(Path.of(type.getProtectionDomain().getCodeSource().getLocation().toURI()).toString());
+            } catch (URISyntaxException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        entries.add(System.getProperty("java.class.path"));
+        return String.join(File.pathSeparator, entries);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map<String, Listener<Object>> register(final Class<?> holder) throws ReflectiveOperationException {
+        final JedisDispatcher dispatcher = JedisDispatchers.find(holder);
+        assertNotNull(dispatcher, "no dispatcher for " + holder.getName());
+        assertEquals(holder, dispatcher.listenerType());
+
+        final var registrations = new LinkedHashMap<String, Listener<Object>>();
+        final var constructor = holder.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        dispatcher.register(constructor.newInstance(), (JedisDispatcher.Registrar<Object>) (listener, event, pattern, channels) ->
+                registrations.put(event + " " + pattern + " " + List.of(channels), listener));
+        return registrations;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static PacketData<Object> data(final String value) {
+        final var bridge = new GsonDataBridge(new Gson());
+        final var packet = LazyPacket.local(null, PacketType.EVENT.getId(), "event", 0, bridge, value);
+        return (PacketData<Object>) (PacketData<?>) PacketData.of(packet, bridge);
+    }
+
+    private record Compilation(boolean success, List<Diagnostic<? extends JavaFileObject>> diagnosticList, Path classes) {
+
+        List<String> diagnostics(final Diagnostic.Kind kind) {
+            return this.diagnosticList.stream()
+                    .filter(diagnostic -> diagnostic.getKind() == kind)
+                    .map(diagnostic -> diagnostic.getMessage(Locale.ROOT))
+                    .collect(Collectors.toList());
+        }
+
+        List<String> services() throws IOException {
+            final var services = this.classes.resolve(SERVICES);
+            return Files.exists(services) ? Files.readAllLines(services) : null;
+        }
+
+        URLClassLoader classLoader() throws IOException {
+            return new URLClassLoader(new URL[]{this.classes.toUri().toURL()}, JedisListenerProcessorTest.class.getClassLoader());
+        }
+
+        @Override
+        public String toString() {
+            return this.diagnosticList.stream().map(Object::toString).collect(Collectors.joining("\n"));
+        }
+    }
+}
@@ -30,25 +30,51 @@ import net.clydo.jedis.messaging.bridge.JedisBridge;
 import net.clydo.jedis.messaging.callback.CallbacksHandler;
 import net.clydo.jedis.messaging.callback.ReceiveCallback;
 import net.clydo.jedis.messaging.callback.SendCallback;
+import net.clydo.jedis.messaging.listener.DispatchLanes;
 import net.clydo.jedis.messaging.listener.InvokableListener;
+import net.clydo.jedis.messaging.listener.JedisDispatchers;
 import net.clydo.jedis.messaging.listener.Listener;
 import net.clydo.jedis.messaging.listener.ListenerHandler;
+import net.clydo.jedis.messaging.listener.PartitionKeyExtractor;
+import net.clydo.jedis.messaging.messenger.IJedisMessenger;
+import net.clydo.jedis.messaging.messenger.IJedisSubscription;
 import net.clydo.jedis.messaging.messenger.impl.JedisMessenger;
+import net.clydo.jedis.messaging.packet.EventRegistry;
+import net.clydo.jedis.messaging.packet.LazyPacket;
 import net.clydo.jedis.messaging.packet.Packet;
+import net.clydo.jedis.messaging.packet.PacketCodec;
+import net.clydo.jedis.messaging.packet.PacketCompressor;
+import net.clydo.jedis.messaging.packet.PacketData;
 import net.clydo.jedis.messaging.packet.PacketType;
+import net.clydo.jedis.messaging.publisher.PublishQueue;
+import net.clydo.jedis.messaging.publisher.SaturationPolicy;
+import net.clydo.jedis.messaging.util.HashedTimingWheel;
 import net.clydo.jedis.messaging.util.Multithreading;
+import net.clydo.jedis.messaging.util.RedisGlob;
 import net.clydo.jedis.messaging.util.ReflectionUtil;
+import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.Closeable;
 import java.lang.reflect.Method;
+import java.time.Duration;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
 
 /**
  * JedisMessaging is a messaging system built on top of Redis, utilizing Jedis.
@@ -59,12 +85,28 @@ public class JedisMessaging<D> implements Closeable {
     private static final Logger LOGGER = Logger.getLogger(JedisMessaging.class.getName());
 
     private final DataBridge<D> dataBridge;
-    private final JedisMessenger messenger;
-    private final Map<String, ListenerHandler<D>> listenerHandlers;
-    private final Map<String, CallbacksHandler<D>> callbacksHandlers;
+    private final PacketCodec<D> packetCodec;
+    private final IJedisMessenger messenger;
+    private final IJedisSubscription subscription; // Single multiplexed subscriber connection for every channel and pattern.
+    private final PublishQueue publishQueue;
+    private final AtomicLong callbackIds; // Monotonic correlation ids, unique together with the signature.
+    private final AtomicInteger pendingRequests;
+    private final int maxPendingRequests;
+    private final Map<String, ListenerHandler<D>> channelHandlers;
+    private final Map<String, ListenerHandler<D>> patternHandlers;
+    private final CallbacksHandler<D> callbacksHandler;
+    private final HashedTimingWheel timingWheel; // Expires callbacks and times out requests.
+    private final DispatchLanes dispatchLanes; // Runs listeners and callbacks off the subscriber thread.
+    private final PartitionKeyExtractor<D> partitionKeyExtractor;
+    private final boolean localDelivery;
+    private volatile boolean closed;
+    private final ExecutorService ownedExecutor; // Created for this instance unless an executor was given, shut down on close.
+    private final Executor completionExecutor; // Completes request futures, so their continuations never run on the timing wheel or subscriber thread.
     @Getter
     private final String signature; // Unique identifier for this instance of JedisMessaging.
     @Getter
+    private final String inboxChannel; // Private channel the responses to this instance's callbacks are sent to.
+    @Getter
     private final long callbacksExpiresIn;
     @Setter
     private String defaultPublishChannel;
@@ -87,25 +129,82 @@ public class JedisMessaging<D> implements Closeable {
      * @param callbacksExpiresIn time in seconds after which callbacks expire
      */
     public JedisMessaging(final JedisBridge jedisBridge, final DataBridge<D> dataBridge, final long callbacksExpiresIn) {
-        this.callbacksExpiresIn = callbacksExpiresIn;
-        this.dataBridge = dataBridge;
-        this.messenger = new JedisMessenger(jedisBridge);
-        this.listenerHandlers = new ConcurrentHashMap<>();
-        this.callbacksHandlers = new ConcurrentHashMap<>();
-        this.signature = UUID.randomUUID().toString();
+        this(builder(dataBridge).jedisBridge(jedisBridge).callbacksExpiresIn(callbacksExpiresIn));
+    }
 
-        Multithreading.scheduleAtFixedRate(() -> {
-            for (var iterator = this.callbacksHandlers.entrySet().iterator(); iterator.hasNext(); ) {
-                val entry = iterator.next();
-                val value = entry.getValue();
+    /**
+     * Constructor that initializes the JedisMessaging instance with a preconfigured messenger,
+     * e.g. a pipelined {@link JedisMessenger}.
+     *
+     * @param messenger  the messenger used to publish and subscribe
+     * @param dataBridge dataBridge for serialization/deserialization
+     */
+    public JedisMessaging(final IJedisMessenger messenger, final DataBridge<D> dataBridge) {
+        this(messenger, dataBridge, 20);
+    }
 
-                value.cleanup();
+    /**
+     * Constructor that initializes the JedisMessaging instance with a preconfigured messenger
+     * and specified callback expiration time.
+     *
+     * @param messenger          the messenger used to publish and subscribe
+     * @param dataBridge         dataBridge for serialization/deserialization
+     * @param callbacksExpiresIn time in seconds after which callbacks expire
+     */
+    public JedisMessaging(final IJedisMessenger messenger, final DataBridge<D> dataBridge, final long callbacksExpiresIn) {
+        this(builder(dataBridge).messenger(messenger).callbacksExpiresIn(callbacksExpiresIn));
+    }
 
-                if (value.isEmpty()) {
-                    iterator.remove();
-                }
-            }
-        }, callbacksExpiresIn, callbacksExpiresIn, TimeUnit.SECONDS);
+    private JedisMessaging(final @NotNull Builder<D> builder) {
+        builder.validate();
+        this.callbacksExpiresIn = builder.callbacksExpiresIn;
+        this.dataBridge = builder.dataBridge;
+        this.packetCodec = new PacketCodec<>(builder.dataBridge, builder.binaryPackets, new PacketCompressor(
+                builder.compressionThreshold >= 0 ? builder.compressionThreshold : Integer.MAX_VALUE,
+                builder.compressionDictionary,
+                Deflater.DEFAULT_COMPRESSION,
+                builder.maxDecompressedSize
+        ), builder.eventRegistry);
+        this.signature = UUID.randomUUID().toString();
+        this.ownedExecutor = builder.executor == null ? Multithreading.newExecutor("JedisMessaging-" + this.signature.substring(0, 8)) : null;
+        val executor = builder.executor != null ? builder.executor : this.ownedExecutor;
+        this.messenger = builder.messenger != null ? builder.messenger : new JedisMessenger(builder.jedisBridge, builder.publisherBridge != null ? builder.publisherBridge : builder.jedisBridge, executor);
+        this.publishQueue = new PublishQueue(builder.publishQueueCapacity, builder.publishWorkers, builder.saturationPolicy, builder.publishExecutor != null ? builder.publishExecutor : executor);
+        this.callbackIds = new AtomicLong();
+        this.pendingRequests = new AtomicInteger();
+        this.maxPendingRequests = builder.maxPendingRequests;
+        this.channelHandlers = new ConcurrentHashMap<>();
+        this.patternHandlers = new ConcurrentHashMap<>();
+        this.timingWheel = new HashedTimingWheel(1, TimeUnit.MILLISECONDS, 1024, executor);
+        this.dispatchLanes = new DispatchLanes(builder.dispatchLanes, builder.dispatchLaneCapacity, builder.dispatchSaturationPolicy, builder.dispatchExecutor != null ? builder.dispatchExecutor : executor);
+        this.partitionKeyExtractor = builder.partitionKeyExtractor;
+        this.localDelivery = builder.localDelivery;
+        this.completionExecutor = builder.dispatchExecutor != null ? builder.dispatchExecutor : executor;
+        this.callbacksHandler = new CallbacksHandler<>(this, this.dataBridge, this.packetCodec, this.timingWheel, this.dispatchLanes);
+        this.inboxChannel = inboxChannel(this.signature);
+        this.subscription = this.messenger.multiplex(this::route, executor);
+        this.subscription.addChannels(this.inboxChannel);
+    }
+
+    /**
+     * Creates a builder for a JedisMessaging instance.
+     *
+     * @param dataBridge dataBridge for serialization/deserialization
+     * @return a new builder
+     */
+    public static <D> @NotNull Builder<D> builder(final @NotNull DataBridge<D> dataBridge) {
+        return new Builder<>(dataBridge);
+    }
+
+    /**
+     * Returns the inbox channel of the JedisMessaging instance with the given signature.
+     *
+     * @param signature the signature of the instance
+     * @return the channel responses to that instance are published to
+     */
+    @Contract(pure = true)
+    public static @NotNull String inboxChannel(final @NotNull String signature) {
+        return "jedis-messaging:inbox:" + signature;
     }
 
     /**
@@ -118,15 +217,9 @@ public class JedisMessaging<D> implements Closeable {
      * @param skipSelf        whether to skip receiving the message on the same instance
      */
     public void publish(final String channel, final String event, final Object message, final ReceiveCallback receiveCallback, final boolean skipSelf) {
-        Multithreading.execute(() -> {
-            String callbackId = null;
-            if (receiveCallback != null) {
-                callbackId = this.putCallback(channel, receiveCallback);
-            }
-
-            val packet = new Packet<>(this.signature, PacketType.EVENT, event, this.dataBridge.encodeData(message), callbackId, skipSelf);
-
-            this._publishPacket(channel, packet);
+        this.publishAsync(channel, event, message, receiveCallback, skipSelf).exceptionally(throwable -> {
+            LOGGER.log(Level.WARNING, "Failed to publish to " + channel, throwable);
+            return null;
         });
     }
 
@@ -170,25 +263,251 @@ public class JedisMessaging<D> implements Closeable {
     }
 
     /**
-     * Registers a callback for a specific channel.
+     * Publishes a message to a specified channel through the bounded publish queue.
+     * If the queue is full, the configured {@link SaturationPolicy} decides what happens.
      *
-     * @param channel         the channel where the callback is registered
-     * @param receiveCallback the callback to handle the response
-     * @return the callback ID
+     * @param channel         the channel to publish the message to
+     * @param event           the event type of the message
+     * @param message         the message to be published
+     * @param receiveCallback the callback to handle the response (can be null)
+     * @param skipSelf        whether to skip receiving the message on the same instance
+     * @return a future completed with the number of clients that received the message, minus the sender
      */
-    private String putCallback(final String channel, final ReceiveCallback receiveCallback) {
-        val callbackId = UUID.randomUUID().toString();
+    public CompletableFuture<Long> publishAsync(final String channel, final String event, final Object message, final ReceiveCallback receiveCallback, final boolean skipSelf) {
+        if (this.localDelivery && !skipSelf) {
+            // Local listeners get the message without decoding it, the echo from Redis is then skipped by its signature.
+            val callbackId = receiveCallback != null ? this.putCallback(receiveCallback, Duration.ofSeconds(this.callbacksExpiresIn)) : Packet.NO_CALLBACK;
+            val future = this.publishQueue.submit(() -> {
+                val packet = new Packet<>(this.signature, PacketType.EVENT, event, this.dataBridge.encodeData(message), callbackId, true);
+                return this._publishPacketAsync(channel, packet);
+            });
+            // Only delivered once published. A message the queue rejects or drops, or Redis refuses, reaches no
+            // other instance, so local listeners must not get it either.
+            future.whenComplete((receivers, throwable) -> {
+                if (throwable != null) {
+                    if (callbackId != Packet.NO_CALLBACK) {
+                        this.callbacksHandler.unregister(callbackId);
+                    }
+                    return;
+                }
+
+                try {
+                    this.deliverLocally(channel, event, message, callbackId);
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to deliver locally on " + channel, e);
+                }
+            });
+            return future;
+        }
+
+        return this.publishQueue.submit(() -> {
+            var callbackId = Packet.NO_CALLBACK;
+            if (receiveCallback != null) {
+                callbackId = this.putCallback(receiveCallback, Duration.ofSeconds(this.callbacksExpiresIn));
+            }
+
+            val packet = new Packet<>(this.signature, PacketType.EVENT, event, this.dataBridge.encodeData(message), callbackId, skipSelf);
+
+            return this._publishPacketAsync(channel, packet);
+        });
+    }
+
+    /**
+     * Publishes a message to a specified channel without a callback through the bounded publish queue.
+     *
+     * @param channel  the channel to publish the message to
+     * @param event    the event type of the message
+     * @param message  the message to be published
+     * @param skipSelf whether to skip receiving the message on the same instance
+     * @return a future completed with the number of clients that received the message, minus the sender
+     */
+    public CompletableFuture<Long> publishAsync(final String channel, final String event, final Object message, final boolean skipSelf) {
+        return this.publishAsync(channel, event, message, null, skipSelf);
+    }
+
+    /**
+     * Publishes a message to the default channel through the bounded publish queue.
+     *
+     * @param event           the event type of the message
+     * @param message         the message to be published
+     * @param receiveCallback the callback to handle the response (can be null)
+     * @param skipSelf        whether to skip receiving the message on the same instance
+     * @return a future completed with the number of clients that received the message, minus the sender
+     */
+    public CompletableFuture<Long> publishAsync(final String event, final Object message, final ReceiveCallback receiveCallback, final boolean skipSelf) {
+        if (this.defaultPublishChannel == null) {
+            throw new IllegalStateException("No default channel specified, use setDefaultPublishChannel");
+        }
+
+        return this.publishAsync(this.defaultPublishChannel, event, message, receiveCallback, skipSelf);
+    }
+
+    /**
+     * Publishes a message to the default channel without a callback through the bounded publish queue.
+     *
+     * @param event    the event type of the message
+     * @param message  the message to be published
+     * @param skipSelf whether to skip receiving the message on the same instance
+     * @return a future completed with the number of clients that received the message, minus the sender
+     */
+    public CompletableFuture<Long> publishAsync(final String event, final Object message, final boolean skipSelf) {
+        return this.publishAsync(event, message, null, skipSelf);
+    }
+
+    /**
+     * Sends a request to a specified channel and waits for the first response.
+     * <p>
+     * The returned future completes exceptionally with a {@link TimeoutException} as soon as the timeout
+     * elapses without a response, or with a {@link RejectedExecutionException} if too many requests are
+     * already outstanding or the instance is closed. Requests still waiting for a response when the
+     * instance is closed fail with a {@link CancellationException}.
+     *
+     * @param channel      the channel to send the request to
+     * @param event        the event type of the request
+     * @param payload      the request payload
+     * @param responseType the type the response is bound to
+     * @param timeout      how long to wait for a response
+     * @return a future completed with the first response
+     */
+    public <T> CompletableFuture<T> request(final String channel, final String event, final Object payload, final @NotNull Class<T> responseType, final @NotNull Duration timeout) {
+        if (this.closed) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("JedisMessaging is closed"));
+        }
+        if (this.pendingRequests.incrementAndGet() > this.maxPendingRequests) {
+            this.pendingRequests.decrementAndGet();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Too many pending requests, at most " + this.maxPendingRequests + " are allowed"));
+        }
+
+        val future = new CompletableFuture<T>();
+        final ReceiveCallback callback = (responseChannel, data) -> {
+            final PacketData<?> response = data;
+            this.complete(() -> {
+                try {
+                    future.complete(response.as(responseType));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        };
+        var callbackId = Packet.NO_CALLBACK;
+        final HashedTimingWheel.Timeout timeoutTask;
+        try {
+            callbackId = this.putCallback(callback, timeout);
+            timeoutTask = this.timingWheel.schedule(new RequestTimeout(future, "No response to " + event + " on " + channel + " within " + timeout), timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (IllegalStateException e) {
+            // Closed concurrently, the timing wheel no longer takes timeouts.
+            this.pendingRequests.decrementAndGet();
+            if (callbackId != Packet.NO_CALLBACK) {
+                this.callbacksHandler.unregister(callbackId);
+            }
+            return CompletableFuture.failedFuture(new RejectedExecutionException("JedisMessaging is closed", e));
+        }
+        val registeredCallbackId = callbackId;
+
+        future.whenComplete((response, throwable) -> {
+            timeoutTask.cancel();
+            this.pendingRequests.decrementAndGet();
+            this.callbacksHandler.unregister(registeredCallbackId);
+        });
+
+        this.publishQueue.submit(() -> {
+            val packet = new Packet<>(this.signature, PacketType.EVENT, event, this.dataBridge.encodeData(payload), registeredCallbackId, true);
+            return this._publishPacketAsync(channel, packet);
+        }).whenComplete((receivers, throwable) -> {
+            if (throwable != null) {
+                this.complete(() -> future.completeExceptionally(throwable));
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Fails a request once its timeout elapses, or with a {@link CancellationException} if the instance closes first.
+     */
+    private final class RequestTimeout implements Runnable {
+        private final CompletableFuture<?> future;
+        private final String message;
+
+        private RequestTimeout(final CompletableFuture<?> future, final String message) {
+            this.future = future;
+            this.message = message;
+        }
+
+        @Override
+        public void run() {
+            JedisMessaging.this.complete(() -> this.future.completeExceptionally(new TimeoutException(this.message)));
+        }
+
+        private void cancel() {
+            JedisMessaging.this.complete(() -> this.future.completeExceptionally(new CancellationException("JedisMessaging is closed")));
+        }
+    }
+
+    /**
+     * Completes a request future on the completion executor, falling back to the calling thread once it is shut down.
+     *
+     * @param completion completes the future
+     */
+    private void complete(final Runnable completion) {
+        try {
+            this.completionExecutor.execute(completion);
+        } catch (RejectedExecutionException e) {
+            completion.run();
+        }
+    }
+
+    /**
+     * Sends a request to the default channel and waits for the first response.
+     *
+     * @param event        the event type of the request
+     * @param payload      the request payload
+     * @param responseType the type the response is bound to
+     * @param timeout      how long to wait for a response
+     * @return a future completed with the first response
+     * @see #request(String, String, Object, Class, Duration)
+     */
+    public <T> CompletableFuture<T> request(final String event, final Object payload, final @NotNull Class<T> responseType, final @NotNull Duration timeout) {
+        if (this.defaultPublishChannel == null) {
+            throw new IllegalStateException("No default channel specified, use setDefaultPublishChannel");
+        }
+
+        return this.request(this.defaultPublishChannel, event, payload, responseType, timeout);
+    }
 
-        var handler = this.callbacksHandlers.get(channel);
-        if (handler == null) {
-            handler = new CallbacksHandler<>(this, this.dataBridge);
-            this.callbacksHandlers.put(channel, handler);
+    /**
+     * Hands a message to the handlers of this instance whose channel or pattern matches, without encoding it.
+     *
+     * @param channel    the channel the message is published to
+     * @param event      the event type of the message
+     * @param message    the message object
+     * @param callbackId the callback ID, or {@link Packet#NO_CALLBACK}
+     */
+    private void deliverLocally(final String channel, final String event, final Object message, final long callbackId) {
+        val packet = LazyPacket.local(this.signature, PacketType.EVENT.getId(), event, callbackId, this.dataBridge, message);
 
-            val finalHandler = handler;
-            Multithreading.execute(() -> this.messenger.subscribePattern(finalHandler, channel));
+        val handler = this.channelHandlers.get(channel);
+        if (handler != null) {
+            handler.onLocalPacket(channel, packet);
         }
+        for (Map.Entry<String, ListenerHandler<D>> entry : this.patternHandlers.entrySet()) {
+            if (RedisGlob.matches(entry.getKey(), channel)) {
+                entry.getValue().onLocalPacket(channel, packet);
+            }
+        }
+    }
+
+    /**
+     * Registers a callback whose responses arrive on this instance's inbox channel.
+     *
+     * @param receiveCallback the callback to handle the response
+     * @param expiresIn       how long the callback is kept
+     * @return the callback ID
+     */
+    private long putCallback(final ReceiveCallback receiveCallback, final Duration expiresIn) {
+        val callbackId = this.callbackIds.incrementAndGet();
 
-        handler.register(callbackId, receiveCallback);
+        this.callbacksHandler.register(callbackId, receiveCallback, expiresIn);
 
         return callbackId;
     }
@@ -201,8 +520,33 @@ public class JedisMessaging<D> implements Closeable {
      * @return the number of clients that received the message, minus the sender
      */
     public long _publishPacket(final String channel, final Packet<D> packet) {
-        val json = this.dataBridge.encodePacket(packet);
-        return this.messenger.publish(channel, json) - 1;
+        val bytes = this.packetCodec.encode(packet);
+        return this.messenger.publish(channel, bytes) - 1;
+    }
+
+    /**
+     * Publishes a packet to a specific channel through the publish queue, logging failures.
+     *
+     * @param channel the channel to publish the packet to
+     * @param packet  creates the packet on a publish worker
+     */
+    public void _submitPacket(final String channel, final Supplier<Packet<D>> packet) {
+        this.publishQueue.submit(() -> this._publishPacketAsync(channel, packet.get())).exceptionally(throwable -> {
+            LOGGER.log(Level.WARNING, "Failed to publish to " + channel, throwable);
+            return null;
+        });
+    }
+
+    /**
+     * Publishes a packet to a specific channel without blocking on the messenger.
+     *
+     * @param channel the channel to publish the packet to
+     * @param packet  the packet to be published
+     * @return a future completed with the number of clients that received the message, minus the sender
+     */
+    public CompletableFuture<Long> _publishPacketAsync(final String channel, final Packet<D> packet) {
+        val bytes = this.packetCodec.encode(packet);
+        return this.messenger.publishAsync(channel, bytes).thenApply(receivers -> receivers - 1);
     }
 
     /**
@@ -226,23 +570,56 @@ public class JedisMessaging<D> implements Closeable {
         }
     }
 
+    /**
+     * Removes a listener added with {@link #subscribe(Listener)}. The channels stay subscribed.
+     *
+     * @param listener the listener to remove
+     * @return true if the listener was subscribed
+     */
+    public boolean unsubscribe(final @NotNull Listener<D> listener) {
+        val clazz = listener.getClass();
+        val jedisChannels = ReflectionUtil.validateAnnotation(clazz, JedisChannels.class);
+        val jedisEvent = ReflectionUtil.validateAnnotation(clazz, JedisEvent.class);
+
+        val handlers = jedisChannels.pattern() ? this.patternHandlers : this.channelHandlers;
+        var removed = false;
+        for (String channel : jedisChannels.value()) {
+            val handler = handlers.get(channel);
+            if (handler != null) {
+                removed |= handler.unregister(jedisEvent.value(), listener);
+            }
+        }
+        return removed;
+    }
+
     /**
      * Subscribes a listener to events or patterns as defined by the JedisListener annotation.
+     * <p>
+     * Uses the dispatcher generated for the class of the listeners if there is one, and reflection otherwise.
      *
      * @param listeners the listeners to subscribe
      */
+    @SuppressWarnings("unchecked")
     public <L> void subscribeFrom(final @NotNull L listeners) {
-        val clazz = listeners.getClass();
+        val clazz = (Class<L>) listeners.getClass();
+
+        val dispatcher = JedisDispatchers.find(clazz);
+        if (dispatcher != null) {
+            dispatcher.<D>register(listeners, (listener, event, pattern, channels) -> {
+                if (pattern) {
+                    this._subscribePattern(listener, event, channels);
+                } else {
+                    this._subscribeChannel(listener, event, channels);
+                }
+            });
+            return;
+        }
 
-        var jedisChannels = ReflectionUtil.getAnnotation(clazz, JedisChannels.class, true);
+        val classChannels = ReflectionUtil.getAnnotation(clazz, JedisChannels.class, true);
 
         for (Method method : clazz.getDeclaredMethods()) {
-            val methodClass = method.getClass();
-
-            val annotation = ReflectionUtil.getAnnotation(methodClass, JedisChannels.class, true);
-            if (annotation != null) {
-                jedisChannels = annotation;
-            }
+            val methodChannels = ReflectionUtil.getAnnotation(method, JedisChannels.class, true);
+            val jedisChannels = methodChannels != null ? methodChannels : classChannels;
 
             val jedisEvent = ReflectionUtil.getAnnotation(method, JedisEvent.class, true);
 
@@ -283,13 +660,15 @@ public class JedisMessaging<D> implements Closeable {
         }
 
         for (String channel : channels) {
-            var handler = this.listenerHandlers.get(channel);
+            var handler = this.channelHandlers.get(channel);
             if (handler == null) {
-                handler = new ListenerHandler<>(this, this.dataBridge);
-                this.listenerHandlers.put(channel, handler);
-
-                val finalHandler = handler;
-                Multithreading.execute(() -> this.messenger.subscribe(finalHandler, channel));
+                handler = new ListenerHandler<>(this, this.dataBridge, this.packetCodec, this.dispatchLanes, this.partitionKeyExtractor);
+                val tempHandler = this.channelHandlers.putIfAbsent(channel, handler);
+                if (tempHandler != null) {
+                    handler = tempHandler;
+                } else {
+                    this.subscription.addChannels(channel);
+                }
             }
 
             if (event != null) {
@@ -311,13 +690,15 @@ public class JedisMessaging<D> implements Closeable {
         }
 
         for (String pattern : patterns) {
-            var handler = this.listenerHandlers.get(pattern);
+            var handler = this.patternHandlers.get(pattern);
             if (handler == null) {
-                handler = new ListenerHandler<>(this, this.dataBridge);
-                this.listenerHandlers.put(pattern, handler);
-
-                val finalHandler = handler;
-                Multithreading.execute(() -> this.messenger.subscribePattern(finalHandler, pattern));
+                handler = new ListenerHandler<>(this, this.dataBridge, this.packetCodec, this.dispatchLanes, this.partitionKeyExtractor);
+                val tempHandler = this.patternHandlers.putIfAbsent(pattern, handler);
+                if (tempHandler != null) {
+                    handler = tempHandler;
+                } else {
+                    this.subscription.addPatterns(pattern);
+                }
             }
 
             if (event != null) {
@@ -327,10 +708,300 @@ public class JedisMessaging<D> implements Closeable {
     }
 
     /**
-     * Closes the JedisMessaging instance, shutting down executors and closing the Jedis pool.
+     * Routes a message received on the multiplexed subscription to the inbox or the handlers of its channel or pattern.
+     *
+     * @param pattern the pattern that matched the channel, or null for a plain channel subscription
+     * @param channel the channel the message was published to
+     * @param message the raw message
+     */
+    private void route(final @Nullable String pattern, final @NotNull String channel, final byte @NotNull [] message) {
+        if (pattern == null) {
+            if (this.inboxChannel.equals(channel)) {
+                this.callbacksHandler.onMessage(channel, message);
+                return;
+            }
+
+            val handler = this.channelHandlers.get(channel);
+            if (handler != null) {
+                handler.onMessage(channel, message);
+            }
+            return;
+        }
+
+        val handler = this.patternHandlers.get(pattern);
+        if (handler != null) {
+            handler.onMessage(channel, message);
+        }
+    }
+
+    /**
+     * Closes the JedisMessaging instance, closing the subscriber connection, the messenger and shutting down the executor it created.
      */
     @Override
     public void close() {
-        Multithreading.shutdownExecutors();
+        this.closed = true;
+        this.publishQueue.close();
+        this.subscription.close();
+        this.dispatchLanes.close();
+        // No response can arrive anymore, fail the requests still waiting for one.
+        for (HashedTimingWheel.Timeout timeout : this.timingWheel.stop()) {
+            if (timeout.task() instanceof JedisMessaging<?>.RequestTimeout requestTimeout) {
+                requestTimeout.cancel();
+            }
+        }
+        this.messenger.close();
+        this.packetCodec.close();
+        if (this.ownedExecutor != null) {
+            Multithreading.shutdownExecutor(this.ownedExecutor);
+        }
+    }
+
+    /**
+     * Builder for {@link JedisMessaging} instances.
+     */
+    public static final class Builder<D> {
+        private final DataBridge<D> dataBridge;
+        private JedisBridge jedisBridge;
+        private JedisBridge publisherBridge;
+        private IJedisMessenger messenger;
+        private long callbacksExpiresIn = 20;
+        private int publishQueueCapacity = 8192;
+        private int publishWorkers = Runtime.getRuntime().availableProcessors();
+        private SaturationPolicy saturationPolicy = SaturationPolicy.BLOCK;
+        private int maxPendingRequests = 10000;
+        private boolean binaryPackets;
+        private EventRegistry eventRegistry;
+        private boolean localDelivery;
+        private int compressionThreshold = -1;
+        private byte[] compressionDictionary;
+        private int maxDecompressedSize = PacketCompressor.DEFAULT_MAX_DECOMPRESSED_SIZE;
+        private int dispatchLanes;
+        private int dispatchLaneCapacity = 1024;
+        private PartitionKeyExtractor<D> partitionKeyExtractor = PartitionKeyExtractor.channel();
+        private SaturationPolicy dispatchSaturationPolicy = SaturationPolicy.BLOCK;
+        private Executor executor;
+        private Executor publishExecutor;
+        private Executor dispatchExecutor;
+
+        private Builder(final @NotNull DataBridge<D> dataBridge) {
+            this.dataBridge = dataBridge;
+        }
+
+        /**
+         * @param jedisBridge the Redis bridge a default {@link JedisMessenger} is created with
+         */
+        public Builder<D> jedisBridge(final @NotNull JedisBridge jedisBridge) {
+            this.jedisBridge = jedisBridge;
+            return this;
+        }
+
+        /**
+         * Only applies to the default messenger, {@code build()} fails if a {@link #messenger} is set as well.
+         * Pass the bridge to the messenger instead, a pipelined {@link JedisMessenger} has no use for it.
+         *
+         * @param publisherBridge the Redis bridge the default {@link JedisMessenger} publishes through instead of {@link #jedisBridge},
+         *                        for example a {@link JedisBridge#striped} bridge
+         */
+        public Builder<D> publisherBridge(final @NotNull JedisBridge publisherBridge) {
+            this.publisherBridge = publisherBridge;
+            return this;
+        }
+
+        /**
+         * @param messenger the messenger used to publish and subscribe, takes precedence over {@link #jedisBridge}
+         */
+        public Builder<D> messenger(final @NotNull IJedisMessenger messenger) {
+            this.messenger = messenger;
+            return this;
+        }
+
+        /**
+         * @param callbacksExpiresIn time in seconds after which callbacks expire
+         */
+        public Builder<D> callbacksExpiresIn(final long callbacksExpiresIn) {
+            this.callbacksExpiresIn = callbacksExpiresIn;
+            return this;
+        }
+
+        /**
+         * @param publishQueueCapacity how many publishes may wait for a publish worker
+         */
+        public Builder<D> publishQueueCapacity(final int publishQueueCapacity) {
+            this.publishQueueCapacity = publishQueueCapacity;
+            return this;
+        }
+
+        /**
+         * @param publishWorkers how many workers drain the publish queue
+         */
+        public Builder<D> publishWorkers(final int publishWorkers) {
+            this.publishWorkers = publishWorkers;
+            return this;
+        }
+
+        /**
+         * @param saturationPolicy what happens to a publish while the publish queue is full
+         */
+        public Builder<D> saturationPolicy(final @NotNull SaturationPolicy saturationPolicy) {
+            this.saturationPolicy = saturationPolicy;
+            return this;
+        }
+
+        /**
+         * @param maxPendingRequests how many requests may wait for a response at the same time
+         */
+        public Builder<D> maxPendingRequests(final int maxPendingRequests) {
+            this.maxPendingRequests = maxPendingRequests;
+            return this;
+        }
+
+        /**
+         * Binary packets need a DataBridge that supports payload bytes. Instances receive both formats
+         * regardless of this setting, so it can be switched one instance at a time.
+         *
+         * @param binaryPackets whether packets are published in the binary format instead of JSON
+         */
+        public Builder<D> binaryPackets(final boolean binaryPackets) {
+            this.binaryPackets = binaryPackets;
+            return this;
+        }
+
+        /**
+         * Local listeners then receive the published object itself, unless its type is annotated with
+         * {@link net.clydo.jedis.messaging.annotations.JedisMutable}, and no longer the copy echoed by Redis.
+         * They get it once Redis accepted the publish, so they never see a message remote subscribers miss.
+         * Remote subscribers are not affected.
+         *
+         * @param localDelivery whether messages published without skipSelf are handed to this instance's listeners directly
+         */
+        public Builder<D> localDelivery(final boolean localDelivery) {
+            this.localDelivery = localDelivery;
+            return this;
+        }
+
+        /**
+         * Binary packets then carry an interned id instead of the event name. Unlike the packet format
+         * itself, this has to be enabled on every instance at once, instances without a registry drop
+         * these packets.
+         *
+         * @param eventRegistry the registry event names are interned in, requires {@link #binaryPackets}
+         */
+        public Builder<D> eventRegistry(final @NotNull EventRegistry eventRegistry) {
+            this.eventRegistry = eventRegistry;
+            return this;
+        }
+
+        /**
+         * Compressed packets are always accepted, regardless of this setting.
+         *
+         * @param compressionThreshold the encoded packet size in bytes from which packets are deflated, or -1 to never compress
+         */
+        public Builder<D> compressionThreshold(final int compressionThreshold) {
+            this.compressionThreshold = compressionThreshold;
+            return this;
+        }
+
+        /**
+         * Every instance receiving packets compressed with a dictionary needs the same dictionary.
+         *
+         * @param compressionDictionary the preset deflate dictionary, typically sample packets of the usual shapes
+         */
+        public Builder<D> compressionDictionary(final byte @Nullable [] compressionDictionary) {
+            this.compressionDictionary = compressionDictionary;
+            return this;
+        }
+
+        /**
+         * @param maxDecompressedSize the largest size in bytes a received compressed packet may inflate to, larger ones are dropped
+         */
+        public Builder<D> maxDecompressedSize(final int maxDecompressedSize) {
+            this.maxDecompressedSize = maxDecompressedSize;
+            return this;
+        }
+
+        /**
+         * Packets with the same partition key are handled in order on one lane.
+         *
+         * @param dispatchLanes how many lanes run listeners and callbacks, or 0 to run them on the subscriber thread
+         */
+        public Builder<D> dispatchLanes(final int dispatchLanes) {
+            this.dispatchLanes = dispatchLanes;
+            return this;
+        }
+
+        /**
+         * @param dispatchLaneCapacity how many packets a lane holds before the subscriber thread waits for it
+         */
+        public Builder<D> dispatchLaneCapacity(final int dispatchLaneCapacity) {
+            this.dispatchLaneCapacity = dispatchLaneCapacity;
+            return this;
+        }
+
+        /**
+         * @param partitionKeyExtractor chooses the partition of received packets, defaults to their channel
+         */
+        public Builder<D> partitionKeyExtractor(final @NotNull PartitionKeyExtractor<D> partitionKeyExtractor) {
+            this.partitionKeyExtractor = partitionKeyExtractor;
+            return this;
+        }
+
+        /**
+         * @param dispatchSaturationPolicy what happens to a received packet while its dispatch lane is full
+         */
+        public Builder<D> dispatchSaturationPolicy(final @NotNull SaturationPolicy dispatchSaturationPolicy) {
+            this.dispatchSaturationPolicy = dispatchSaturationPolicy;
+            return this;
+        }
+
+        /**
+         * Runs the subscriber loop, the timeouts and, unless they have their own executors, the publish
+         * workers and dispatch lanes. These are long-running loops, so the executor needs a thread for each.
+         * It is not shut down on close. By default every instance creates and owns its own executor.
+         *
+         * @param executor the executor running the background work of the instance
+         */
+        public Builder<D> executor(final @NotNull Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * @param publishExecutor runs the {@link #publishWorkers} publish workers
+         */
+        public Builder<D> publishExecutor(final @NotNull Executor publishExecutor) {
+            this.publishExecutor = publishExecutor;
+            return this;
+        }
+
+        /**
+         * @param dispatchExecutor runs the {@link #dispatchLanes} dispatch lanes
+         */
+        public Builder<D> dispatchExecutor(final @NotNull Executor dispatchExecutor) {
+            this.dispatchExecutor = dispatchExecutor;
+            return this;
+        }
+
+        public JedisMessaging<D> build() {
+            return new JedisMessaging<>(this);
+        }
+
+        // Also run for the public constructors, which bypass build().
+        private void validate() {
+            if (this.jedisBridge == null && this.messenger == null) {
+                throw new IllegalStateException("Either a jedisBridge or a messenger is required");
+            }
+            if (this.publisherBridge != null && this.messenger != null) {
+                throw new IllegalStateException("A publisherBridge is only used by the default messenger, pass it to the messenger instead");
+            }
+            if (!this.binaryPackets && !this.dataBridge.supportsJsonPackets()) {
+                throw new IllegalStateException(this.dataBridge.getClass().getSimpleName() + " requires binary packets");
+            }
+            if (this.binaryPackets && !this.dataBridge.supportsBinaryPackets()) {
+                throw new IllegalStateException(this.dataBridge.getClass().getSimpleName() + " does not support binary packets");
+            }
+            if (this.eventRegistry != null && !this.binaryPackets) {
+                throw new IllegalStateException("Interned events require binary packets");
+            }
+        }
     }
 }
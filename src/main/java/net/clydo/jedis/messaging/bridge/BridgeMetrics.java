@@ -0,0 +1,42 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.bridge;
+
+/**
+ * A snapshot of the connections behind a {@link PooledJedisBridge} or {@link StripedJedisBridge}.
+ *
+ * @param connections open connections
+ * @param active      connections in use right now
+ * @param waiters     threads waiting for a connection right now
+ * @param borrows     bridge calls so far
+ * @param created     connections opened so far
+ * @param discarded   connections closed so far because they broke or failed a health check
+ */
+public record BridgeMetrics(
+        int connections,
+        int active,
+        int waiters,
+        long borrows,
+        long created,
+        long discarded
+) {
+}
@@ -22,6 +22,8 @@ package net.clydo.jedis.messaging.bridge;
 
 import net.clydo.jedis.messaging.packet.Packet;
 
+import java.nio.charset.StandardCharsets;
+
 public interface DataBridge<D> {
 
     //<T> T fromJson(JsonElement json, Class<T> classOfT)
@@ -36,4 +38,32 @@ public interface DataBridge<D> {
     //<T> T fromJson(String json, Class<T> classOfT)
     Packet<D> decodePacket(String data);
 
+    // Bytes of a JSON packet, bridges that can read and write UTF-8 directly override these.
+    default byte[] encodePacketBytes(Packet<D> src) {
+        return this.encodePacket(src).getBytes(StandardCharsets.UTF_8);
+    }
+
+    default Packet<D> decodePacketBytes(byte[] bytes) {
+        return this.decodePacket(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    // Whether packets can be written as JSON, checked unless binary packets are enabled.
+    default boolean supportsJsonPackets() {
+        return true;
+    }
+
+    // Whether encodeDataBytes and decodeData are implemented, checked when binary packets are enabled.
+    default boolean supportsBinaryPackets() {
+        return false;
+    }
+
+    // Payload bytes of the binary packet format.
+    default byte[] encodeDataBytes(D data) {
+        throw new UnsupportedOperationException(this.getClass().getSimpleName() + " does not support binary packets");
+    }
+
+    default D decodeData(byte[] bytes, int offset, int length) {
+        throw new UnsupportedOperationException(this.getClass().getSimpleName() + " does not support binary packets");
+    }
+
 }
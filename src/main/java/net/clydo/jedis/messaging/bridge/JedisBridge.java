@@ -23,6 +23,8 @@ package net.clydo.jedis.messaging.bridge;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPooled;
 
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -52,4 +54,19 @@ public interface JedisBridge {
         };
     }
 
+    @Contract(value = "_ -> new", pure = true)
+    static @NotNull PooledJedisBridge pooled(JedisPool jedisPool) {
+        return PooledJedisBridge.of(jedisPool);
+    }
+
+    @Contract(value = "_ -> new", pure = true)
+    static @NotNull PooledJedisBridge pooled(JedisPooled jedisPooled) {
+        return PooledJedisBridge.of(jedisPooled);
+    }
+
+    @Contract(value = "_, _ -> new", pure = true)
+    static @NotNull StripedJedisBridge striped(Supplier<Jedis> connectionFactory, int connections) {
+        return new StripedJedisBridge(connectionFactory, connections);
+    }
+
 }
@@ -0,0 +1,81 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.bridge;
+
+import lombok.val;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.util.Pool;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Borrows a connection from a Jedis pool for every call and returns it afterwards.
+ */
+public class PooledJedisBridge implements JedisBridge {
+    private final Pool<?> pool;
+    private final Supplier<Jedis> borrower;
+    private final LongAdder borrows;
+
+    private PooledJedisBridge(final Pool<?> pool, final Supplier<Jedis> borrower) {
+        this.pool = pool;
+        this.borrower = borrower;
+        this.borrows = new LongAdder();
+    }
+
+    @Contract(value = "_ -> new", pure = true)
+    public static @NotNull PooledJedisBridge of(final @NotNull JedisPool pool) {
+        return new PooledJedisBridge(pool, pool::getResource);
+    }
+
+    @Contract(value = "_ -> new", pure = true)
+    public static @NotNull PooledJedisBridge of(final @NotNull JedisPooled jedisPooled) {
+        val pool = jedisPooled.getPool();
+        return new PooledJedisBridge(pool, () -> new Jedis(pool.getResource()));
+    }
+
+    @Override
+    public <T> T bridge(final Function<Jedis, T> function) {
+        this.borrows.increment();
+        try (Jedis jedis = this.borrower.get()) {
+            return function.apply(jedis);
+        }
+    }
+
+    public @NotNull BridgeMetrics metrics() {
+        return new BridgeMetrics(
+                this.pool.getNumActive() + this.pool.getNumIdle(),
+                this.pool.getNumActive(),
+                this.pool.getNumWaiters(),
+                this.borrows.sum(),
+                this.pool.getCreatedCount(),
+                this.pool.getDestroyedCount()
+        );
+    }
+
+}
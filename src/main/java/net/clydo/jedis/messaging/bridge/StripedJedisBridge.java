@@ -0,0 +1,198 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.bridge;
+
+import lombok.val;
+import org.jetbrains.annotations.NotNull;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a small fixed set of long-lived connections and stripes the calling threads across them,
+ * so publishing does not open or borrow a connection per call.
+ * <p>
+ * Every thread always uses the same connection, and a connection serves one call at a time. Threads
+ * are given their connection round robin on first use, so they spread evenly over the connections.
+ * It is meant for short commands such as publishes, not for blocking subscriptions.
+ */
+public class StripedJedisBridge implements JedisBridge, Closeable {
+    private final Supplier<Jedis> connectionFactory;
+    private final Stripe[] stripes;
+    private final AtomicInteger nextStripe;
+    private final ThreadLocal<Stripe> stripe;
+    private final long healthCheckNanos;
+    private final LongAdder borrows;
+    private final LongAdder created;
+    private final LongAdder discarded;
+    private volatile boolean closed;
+
+    /**
+     * @param connectionFactory opens a new connection, for example {@code () -> new Jedis("localhost", 6379)}
+     * @param connections       how many connections are kept open
+     */
+    public StripedJedisBridge(final @NotNull Supplier<Jedis> connectionFactory, final int connections) {
+        this(connectionFactory, connections, Duration.ofSeconds(30));
+    }
+
+    /**
+     * @param connectionFactory   opens a new connection, for example {@code () -> new Jedis("localhost", 6379)}
+     * @param connections         how many connections are kept open
+     * @param healthCheckInterval how long a connection may stay unused before it is pinged ahead of its next call
+     */
+    public StripedJedisBridge(final @NotNull Supplier<Jedis> connectionFactory, final int connections, final @NotNull Duration healthCheckInterval) {
+        if (connections <= 0) {
+            throw new IllegalArgumentException("connections must be positive");
+        }
+
+        this.connectionFactory = connectionFactory;
+        this.stripes = new Stripe[connections];
+        for (int i = 0; i < connections; i++) {
+            this.stripes[i] = new Stripe();
+        }
+        this.nextStripe = new AtomicInteger();
+        this.stripe = ThreadLocal.withInitial(() -> this.stripes[Math.floorMod(this.nextStripe.getAndIncrement(), this.stripes.length)]);
+        this.healthCheckNanos = healthCheckInterval.toNanos();
+        this.borrows = new LongAdder();
+        this.created = new LongAdder();
+        this.discarded = new LongAdder();
+    }
+
+    @Override
+    public <T> T bridge(final Function<Jedis, T> function) {
+        if (this.closed) {
+            throw new IllegalStateException("Bridge is closed");
+        }
+
+        val stripe = this.stripe.get();
+        this.borrows.increment();
+
+        stripe.lock.lock();
+        try {
+            val jedis = this.connection(stripe);
+            try {
+                val result = function.apply(jedis);
+                stripe.lastUsed = System.nanoTime();
+                return result;
+            } catch (JedisConnectionException e) {
+                this.discard(stripe);
+                throw e;
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    private @NotNull Jedis connection(final @NotNull Stripe stripe) {
+        var jedis = stripe.jedis;
+
+        if (jedis != null && (jedis.isBroken() || !jedis.isConnected())) {
+            this.discard(stripe);
+            jedis = null;
+        }
+
+        if (jedis != null && System.nanoTime() - stripe.lastUsed > this.healthCheckNanos) {
+            try {
+                jedis.ping();
+            } catch (JedisException e) {
+                this.discard(stripe);
+                jedis = null;
+            }
+        }
+
+        if (jedis == null) {
+            jedis = this.connectionFactory.get();
+            this.created.increment();
+            stripe.jedis = jedis;
+            stripe.lastUsed = System.nanoTime();
+        }
+
+        return jedis;
+    }
+
+    private void discard(final @NotNull Stripe stripe) {
+        val jedis = stripe.jedis;
+        if (jedis == null) {
+            return;
+        }
+
+        stripe.jedis = null;
+        this.discarded.increment();
+
+        try {
+            jedis.close();
+        } catch (JedisException ignored) {
+        }
+    }
+
+    public @NotNull BridgeMetrics metrics() {
+        int connections = 0;
+        int active = 0;
+        int waiters = 0;
+
+        for (val stripe : this.stripes) {
+            if (stripe.jedis != null) {
+                connections++;
+            }
+            if (stripe.lock.isLocked()) {
+                active++;
+            }
+            waiters += stripe.lock.getQueueLength();
+        }
+
+        return new BridgeMetrics(connections, active, waiters, this.borrows.sum(), this.created.sum(), this.discarded.sum());
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+
+        for (val stripe : this.stripes) {
+            stripe.lock.lock();
+            try {
+                val jedis = stripe.jedis;
+                if (jedis != null) {
+                    stripe.jedis = null;
+                    jedis.close();
+                }
+            } catch (JedisException ignored) {
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile Jedis jedis;
+        private long lastUsed;
+    }
+
+}
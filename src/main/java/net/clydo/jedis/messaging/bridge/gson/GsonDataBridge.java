@@ -26,6 +26,10 @@ import lombok.RequiredArgsConstructor;
 import net.clydo.jedis.messaging.bridge.DataBridge;
 import net.clydo.jedis.messaging.packet.Packet;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
 @RequiredArgsConstructor
 public class GsonDataBridge implements DataBridge<JsonElement> {
 
@@ -53,4 +57,19 @@ public class GsonDataBridge implements DataBridge<JsonElement> {
         return this.gson.fromJson(data, PACKET_TYPE_TOKEN);
     }
 
+    @Override
+    public boolean supportsBinaryPackets() {
+        return true;
+    }
+
+    @Override
+    public byte[] encodeDataBytes(JsonElement data) {
+        return this.gson.toJson(data).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public JsonElement decodeData(byte[] bytes, int offset, int length) {
+        return this.gson.fromJson(new InputStreamReader(new ByteArrayInputStream(bytes, offset, length), StandardCharsets.UTF_8), JsonElement.class);
+    }
+
 }
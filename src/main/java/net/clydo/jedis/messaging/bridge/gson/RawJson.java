@@ -0,0 +1,88 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.bridge.gson;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Payload of the {@link StreamingGsonDataBridge}.
+ * <p>
+ * Outgoing payloads hold the object itself until it is written into the packet, received payloads
+ * are a slice of the message bytes that is only bound to a type when a listener asks for one.
+ */
+public final class RawJson {
+    private final Object value;
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+
+    private RawJson(final Object value, final byte[] bytes, final int offset, final int length) {
+        this.value = value;
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Contract("_ -> new")
+    public static @NotNull RawJson of(final Object value) {
+        return new RawJson(value, null, 0, 0);
+    }
+
+    @Contract("_, _, _ -> new")
+    public static @NotNull RawJson slice(final byte @NotNull [] bytes, final int offset, final int length) {
+        return new RawJson(null, bytes, offset, length);
+    }
+
+    /**
+     * @return whether this payload is still encoded JSON rather than an object
+     */
+    public boolean isEncoded() {
+        return this.bytes != null;
+    }
+
+    /**
+     * @return the object of an outgoing payload
+     */
+    public Object value() {
+        return this.value;
+    }
+
+    byte[] bytes() {
+        return this.bytes;
+    }
+
+    int offset() {
+        return this.offset;
+    }
+
+    int length() {
+        return this.length;
+    }
+
+    @Override
+    public String toString() {
+        return this.isEncoded() ? new String(this.bytes, this.offset, this.length, StandardCharsets.UTF_8) : String.valueOf(this.value);
+    }
+}
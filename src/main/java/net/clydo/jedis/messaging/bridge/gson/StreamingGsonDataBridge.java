@@ -0,0 +1,161 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.bridge.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonWriter;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import net.clydo.jedis.messaging.bridge.DataBridge;
+import net.clydo.jedis.messaging.packet.Packet;
+import net.clydo.jedis.messaging.packet.PacketCodec;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Gson bridge that never builds a {@link com.google.gson.JsonElement} tree.
+ * <p>
+ * Payloads are serialized straight into the packet by a {@link JsonWriter}, and received payloads
+ * stay a {@link RawJson} slice of the message until a listener binds them to a type. Packets are
+ * written in the same JSON layout as {@link GsonDataBridge}, so both bridges can talk to each other.
+ * The envelope always uses the default field names, a {@link GsonDataBridge} whose Gson renames
+ * fields with a naming policy cannot talk to this bridge.
+ * <p>
+ * The payload object is only serialized when the packet is written, it must not be mutated after
+ * it was handed to publish.
+ */
+@RequiredArgsConstructor
+public class StreamingGsonDataBridge implements DataBridge<RawJson> {
+    private static final int INITIAL_BUFFER_SIZE = 256;
+
+    private final Gson gson;
+
+    @Override
+    public <T> T dataAs(RawJson data, Class<T> as) {
+        if (data == null) {
+            return null;
+        }
+        if (as.isInstance(data)) {
+            return as.cast(data);
+        }
+        if (data.isEncoded()) {
+            return this.gson.fromJson(new Utf8ByteReader(data.bytes(), data.offset(), data.length()), as);
+        }
+        if (as.isInstance(data.value())) {
+            return as.cast(data.value());
+        }
+        return this.gson.fromJson(this.gson.toJsonTree(data.value()), as);
+    }
+
+    @Override
+    public RawJson encodeData(Object src) {
+        return RawJson.of(src);
+    }
+
+    @Override
+    public String encodePacket(Packet<RawJson> src) {
+        return new String(this.encodePacketBytes(src), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Packet<RawJson> decodePacket(String data) {
+        return this.decodePacketBytes(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public byte[] encodePacketBytes(Packet<RawJson> src) {
+        val out = new Utf8ByteWriter(INITIAL_BUFFER_SIZE);
+        try (val writer = this.gson.newJsonWriter(out)) {
+            writer.beginObject();
+            if (src.signature() != null) {
+                writer.name("signature").value(src.signature());
+            }
+            writer.name("type").value(src.type());
+            if (src.event() != null) {
+                writer.name("event").value(src.event());
+            }
+            if (src.data() != null) {
+                writer.name("data");
+                this.writeData(writer, src.data());
+            }
+            writer.name("callbackId").value(src.callbackId());
+            writer.name("skipSelf").value(src.skipSelf());
+            writer.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public Packet<RawJson> decodePacketBytes(byte[] bytes) {
+        val packet = PacketCodec.readJsonEnvelope(this, bytes);
+        if (packet == null) {
+            throw new JsonSyntaxException("Malformed packet");
+        }
+        return packet.toPacket();
+    }
+
+    @Override
+    public boolean supportsBinaryPackets() {
+        return true;
+    }
+
+    @Override
+    public byte[] encodeDataBytes(RawJson data) {
+        if (data != null && data.isEncoded()) {
+            val bytes = data.bytes();
+            if (data.offset() == 0 && data.length() == bytes.length) {
+                return bytes;
+            }
+            val copy = new byte[data.length()];
+            System.arraycopy(bytes, data.offset(), copy, 0, copy.length);
+            return copy;
+        }
+
+        val out = new Utf8ByteWriter(INITIAL_BUFFER_SIZE);
+        try (val writer = this.gson.newJsonWriter(out)) {
+            this.writeData(writer, data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public RawJson decodeData(byte[] bytes, int offset, int length) {
+        return RawJson.slice(bytes, offset, length);
+    }
+
+    private void writeData(final JsonWriter writer, final RawJson data) throws IOException {
+        if (data == null || (!data.isEncoded() && data.value() == null)) {
+            writer.nullValue();
+        } else if (data.isEncoded()) {
+            writer.jsonValue(data.toString());
+        } else {
+            this.gson.toJson(data.value(), data.value().getClass(), writer);
+        }
+    }
+}
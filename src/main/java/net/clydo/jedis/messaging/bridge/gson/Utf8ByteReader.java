@@ -0,0 +1,121 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.bridge.gson;
+
+import lombok.val;
+
+import java.io.Reader;
+
+/**
+ * Reader that decodes UTF-8 straight from a slice of a byte array, without copying it.
+ * Malformed sequences are read as U+FFFD.
+ */
+final class Utf8ByteReader extends Reader {
+    private static final char REPLACEMENT = '\uFFFD';
+
+    private final byte[] bytes;
+    private final int end;
+    private int position;
+    private char lowSurrogate;
+
+    Utf8ByteReader(final byte[] bytes, final int offset, final int length) {
+        this.bytes = bytes;
+        this.position = offset;
+        this.end = offset + length;
+    }
+
+    @Override
+    public int read(final char[] chars, final int offset, final int length) {
+        if (length == 0) {
+            return 0;
+        }
+
+        var count = 0;
+        if (this.lowSurrogate != 0) {
+            chars[offset + count++] = this.lowSurrogate;
+            this.lowSurrogate = 0;
+        }
+
+        val bytes = this.bytes;
+        while (count < length && this.position < this.end) {
+            val b = bytes[this.position];
+            if (b >= 0) {
+                this.position++;
+                chars[offset + count++] = (char) b;
+                continue;
+            }
+
+            val codePoint = this.decode();
+            if (codePoint < 0x10000) {
+                chars[offset + count++] = (char) codePoint;
+            } else {
+                chars[offset + count++] = Character.highSurrogate(codePoint);
+                if (count < length) {
+                    chars[offset + count++] = Character.lowSurrogate(codePoint);
+                } else {
+                    this.lowSurrogate = Character.lowSurrogate(codePoint);
+                }
+            }
+        }
+
+        return count == 0 ? -1 : count;
+    }
+
+    private int decode() {
+        val lead = this.bytes[this.position++] & 0xFF;
+
+        final int continuations;
+        final int minimum;
+        int codePoint;
+        if ((lead & 0xE0) == 0xC0) {
+            continuations = 1;
+            minimum = 0x80;
+            codePoint = lead & 0x1F;
+        } else if ((lead & 0xF0) == 0xE0) {
+            continuations = 2;
+            minimum = 0x800;
+            codePoint = lead & 0x0F;
+        } else if ((lead & 0xF8) == 0xF0) {
+            continuations = 3;
+            minimum = 0x10000;
+            codePoint = lead & 0x07;
+        } else {
+            return REPLACEMENT;
+        }
+
+        for (int i = 0; i < continuations; i++) {
+            if (this.position >= this.end || (this.bytes[this.position] & 0xC0) != 0x80) {
+                return REPLACEMENT;
+            }
+            codePoint = (codePoint << 6) | (this.bytes[this.position++] & 0x3F);
+        }
+
+        if (codePoint < minimum || codePoint > Character.MAX_CODE_POINT || (codePoint >= 0xD800 && codePoint <= 0xDFFF)) {
+            return REPLACEMENT;
+        }
+        return codePoint;
+    }
+
+    @Override
+    public void close() {
+    }
+}
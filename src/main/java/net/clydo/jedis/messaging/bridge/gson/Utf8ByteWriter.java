@@ -0,0 +1,103 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.bridge.gson;
+
+import lombok.val;
+
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Writer that encodes straight into a growable UTF-8 byte array.
+ */
+final class Utf8ByteWriter extends Writer {
+    private byte[] buffer;
+    private int size;
+    private char highSurrogate;
+
+    Utf8ByteWriter(final int initialCapacity) {
+        this.buffer = new byte[initialCapacity];
+    }
+
+    @Override
+    public void write(final int c) {
+        this.ensureCapacity(4);
+        this.encode((char) c);
+    }
+
+    @Override
+    public void write(final char[] chars, final int offset, final int length) {
+        this.ensureCapacity(length * 3 + 1);
+        for (int i = offset; i < offset + length; i++) {
+            this.encode(chars[i]);
+        }
+    }
+
+    @Override
+    public void write(final String string, final int offset, final int length) {
+        this.ensureCapacity(length * 3 + 1);
+        for (int i = offset; i < offset + length; i++) {
+            this.encode(string.charAt(i));
+        }
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(this.buffer, this.size);
+    }
+
+    private void encode(final char c) {
+        val buffer = this.buffer;
+        if (c < 0x80) {
+            buffer[this.size++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[this.size++] = (byte) (0xC0 | (c >> 6));
+            buffer[this.size++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            this.highSurrogate = c;
+        } else if (Character.isLowSurrogate(c) && this.highSurrogate != 0) {
+            val codePoint = Character.toCodePoint(this.highSurrogate, c);
+            this.highSurrogate = 0;
+            buffer[this.size++] = (byte) (0xF0 | (codePoint >> 18));
+            buffer[this.size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            buffer[this.size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            buffer[this.size++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else {
+            buffer[this.size++] = (byte) (0xE0 | (c >> 12));
+            buffer[this.size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[this.size++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    private void ensureCapacity(final int additional) {
+        if (this.size + additional > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length << 1, this.size + additional));
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -23,92 +23,109 @@ package net.clydo.jedis.messaging.callback;
 import lombok.val;
 import net.clydo.jedis.messaging.JedisMessaging;
 import net.clydo.jedis.messaging.bridge.DataBridge;
+import net.clydo.jedis.messaging.listener.DispatchLanes;
+import net.clydo.jedis.messaging.packet.LazyPacket;
 import net.clydo.jedis.messaging.packet.Packet;
+import net.clydo.jedis.messaging.packet.PacketCodec;
 import net.clydo.jedis.messaging.packet.PacketData;
 import net.clydo.jedis.messaging.packet.PacketType;
-import net.clydo.jedis.messaging.util.Pair;
+import net.clydo.jedis.messaging.util.ConcurrentLongMap;
+import net.clydo.jedis.messaging.util.HashedTimingWheel;
 import org.jetbrains.annotations.NotNull;
-import redis.clients.jedis.JedisPubSub;
 
-import java.time.Instant;
+import java.time.Duration;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
-public class CallbacksHandler<D> extends JedisPubSub {
+public class CallbacksHandler<D> {
     private final DataBridge<D> dataBridge;
+    private final PacketCodec<D> packetCodec;
     private final JedisMessaging<D> messaging;
-    private final ConcurrentMap<String, ConcurrentLinkedQueue<Pair<Instant, ReceiveCallback>>> callbacks;
+    private final HashedTimingWheel timingWheel;
+    private final DispatchLanes dispatchLanes;
+    private final ConcurrentLongMap<Registration> callbacks;
 
-    public CallbacksHandler(JedisMessaging<D> messaging, DataBridge<D> dataBridge) {
+    public CallbacksHandler(JedisMessaging<D> messaging, DataBridge<D> dataBridge, PacketCodec<D> packetCodec, HashedTimingWheel timingWheel, DispatchLanes dispatchLanes) {
         this.messaging = messaging;
         this.dataBridge = dataBridge;
-        this.callbacks = new ConcurrentHashMap<>();
+        this.packetCodec = packetCodec;
+        this.timingWheel = timingWheel;
+        this.dispatchLanes = dispatchLanes;
+        this.callbacks = new ConcurrentLongMap<>();
     }
 
-    @Override
-    public void onPMessage(String pattern, String channel, String message) {
+    public void onMessage(String channel, byte[] message) {
         this.onPacket(channel, message);
     }
 
-    @Override
-    public void onMessage(String channel, String message) {
-        this.onPacket(channel, message);
-    }
+    private void onPacket(String channel, byte[] message) {
+        val packet = this.packetCodec.decodeLazy(message);
 
-    private void onPacket(String channel, String message) {
-        val packet = this.dataBridge.decodePacket(message);
+        if (packet.type() != PacketType.CALLBACK.getId() || this.shouldSkipProcessing(packet)) {
+            return;
+        }
 
-        if (this.shouldSkipProcessing(packet)) {
+        val callbackId = packet.callbackId();
+        if (callbackId == Packet.NO_CALLBACK) {
             return;
         }
 
-        if (packet.type() == PacketType.CALLBACK.getId()) {
-            val callbackId = packet.callbackId();
-            if (callbackId != null) {
-                this.processCallback(callbackId, channel, new PacketData<>(packet.data(), this.dataBridge));
-            }
+        // Late responses to expired callbacks are dropped before their payload is decoded.
+        val registration = this.callbacks.get(callbackId);
+        if (registration != null) {
+            // Responses arrive on the inbox, the event carries the channel the request was sent to.
+            this.dispatchLanes.dispatch(Long.hashCode(callbackId), () -> registration.callback.call(packet.event(), new PacketData<>(packet.data(), this.dataBridge)));
         }
     }
 
-    private boolean shouldSkipProcessing(@NotNull Packet<D> packet) {
+    private boolean shouldSkipProcessing(@NotNull LazyPacket<D> packet) {
         return packet.skipSelf() && Objects.equals(packet.signature(), this.messaging.getSignature());
     }
 
-    public void processCallback(final String callbackId, final String channel, final PacketData<D> data) {
-        val callbacksQueue = this.callbacks.get(callbackId);
-        if (callbacksQueue != null) {
-            callbacksQueue.forEach(pair -> {
-                if (this.expired(pair)) {
-                    return;
-                }
-                pair.right().call(channel, data);
-            });
+    public void processCallback(final long callbackId, final String channel, final PacketData<D> data) {
+        val registration = this.callbacks.get(callbackId);
+        if (registration != null) {
+            registration.callback.call(channel, data);
         }
     }
 
-    public void register(String callbackId, ReceiveCallback receiveCallback) {
-        this.callbacks
-                .computeIfAbsent(callbackId, k -> new ConcurrentLinkedQueue<>())
-                .add(Pair.of(Instant.now().plusSeconds(this.messaging.getCallbacksExpiresIn()), receiveCallback));
+    public void register(long callbackId, ReceiveCallback receiveCallback) {
+        this.register(callbackId, receiveCallback, Duration.ofSeconds(this.messaging.getCallbacksExpiresIn()));
     }
 
-    public void cleanup() {
-        this.callbacks.forEach((key, queue) -> {
-            queue.removeIf(this::expired);
-
-            if (queue.isEmpty()) {
-                this.callbacks.remove(key);
-            }
-        });
+    public void register(long callbackId, ReceiveCallback receiveCallback, Duration expiresIn) {
+        val registration = new Registration(callbackId, receiveCallback);
+        this.callbacks.put(callbackId, registration);
+        registration.timeout = this.timingWheel.schedule(registration, expiresIn.toNanos(), TimeUnit.NANOSECONDS);
     }
 
-    private boolean expired(@NotNull Pair<Instant, ReceiveCallback> pair) {
-        return Instant.now().isAfter(pair.left());
+    public void unregister(long callbackId) {
+        val registration = this.callbacks.remove(callbackId);
+        if (registration != null && registration.timeout != null) {
+            registration.timeout.cancel();
+        }
     }
 
     public boolean isEmpty() {
         return this.callbacks.isEmpty();
     }
+
+    /**
+     * A registered callback, which is also the task that expires it.
+     */
+    private final class Registration implements Runnable {
+        private final long callbackId;
+        private final ReceiveCallback callback;
+        private volatile HashedTimingWheel.Timeout timeout;
+
+        private Registration(final long callbackId, final ReceiveCallback callback) {
+            this.callbackId = callbackId;
+            this.callback = callback;
+        }
+
+        @Override
+        public void run() {
+            CallbacksHandler.this.callbacks.remove(this.callbackId, this);
+        }
+    }
 }
@@ -0,0 +1,160 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.listener;
+
+import lombok.val;
+import net.clydo.jedis.messaging.publisher.SaturationPolicy;
+import net.clydo.jedis.messaging.util.Multithreading;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs listeners off the subscriber thread on a fixed number of lanes.
+ * <p>
+ * Each lane is a bounded queue drained by a single worker, so tasks dispatched with the same
+ * partition run one after another in dispatch order, while different partitions run in parallel.
+ * What happens while a lane is full is decided by a {@link SaturationPolicy}. With zero lanes tasks
+ * run inline.
+ */
+public class DispatchLanes implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(DispatchLanes.class.getName());
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final BlockingQueue<Runnable>[] lanes;
+    private final SaturationPolicy saturationPolicy;
+    private volatile boolean closed;
+
+    /**
+     * @param lanes    the number of lanes, or 0 to run tasks on the calling thread
+     * @param capacity how many tasks each lane holds before dispatching waits
+     */
+    public DispatchLanes(final int lanes, final int capacity) {
+        this(lanes, capacity, SaturationPolicy.BLOCK, Multithreading.getPOOL());
+    }
+
+    /**
+     * @param lanes            the number of lanes, or 0 to run tasks on the calling thread
+     * @param capacity         how many tasks each lane holds
+     * @param saturationPolicy what happens to a task while its lane is full
+     * @param executor         runs the lanes, it needs a thread for each of them for as long as the lanes are open
+     */
+    @SuppressWarnings("unchecked")
+    public DispatchLanes(final int lanes, final int capacity, final @NotNull SaturationPolicy saturationPolicy, final @NotNull Executor executor) {
+        if (lanes < 0) {
+            throw new IllegalArgumentException("lanes must not be negative");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+
+        this.saturationPolicy = saturationPolicy;
+        this.lanes = (BlockingQueue<Runnable>[]) new BlockingQueue<?>[lanes];
+        for (int i = 0; i < lanes; i++) {
+            val lane = new LinkedBlockingQueue<Runnable>(capacity);
+            this.lanes[i] = lane;
+            Multithreading.execute(executor, () -> this.work(lane));
+        }
+    }
+
+    /**
+     * Queues a task on the lane of its partition.
+     *
+     * @param partition the hash of the partition key
+     * @param task      the task to run after all tasks dispatched to the same lane before
+     */
+    public void dispatch(final int partition, final @NotNull Runnable task) {
+        if (this.lanes.length == 0) {
+            task.run();
+            return;
+        }
+        if (this.closed) {
+            return;
+        }
+
+        // Spread the hash so keys that only differ in their high bits do not share a lane.
+        val lane = this.lanes[Math.floorMod(partition ^ (partition >>> 16), this.lanes.length)];
+        switch (this.saturationPolicy) {
+            case BLOCK -> {
+                try {
+                    // Timed offers, so a dispatcher waiting for room notices when the lanes are closed.
+                    while (!lane.offer(task, IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        if (this.closed) {
+                            return;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            case FAIL_FAST -> {
+                if (!lane.offer(task)) {
+                    LOGGER.log(Level.WARNING, "Dropped a packet, its dispatch lane is full");
+                }
+            }
+            case DROP_OLDEST -> {
+                while (!lane.offer(task)) {
+                    if (lane.poll() != null) {
+                        LOGGER.log(Level.WARNING, "Dropped the oldest packet of a full dispatch lane");
+                    }
+                }
+            }
+        }
+    }
+
+    private void work(final BlockingQueue<Runnable> lane) {
+        while (!this.closed) {
+            final Runnable task;
+            try {
+                task = lane.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (task == null) {
+                continue;
+            }
+
+            try {
+                task.run();
+            } catch (Throwable throwable) {
+                LOGGER.log(Level.SEVERE, "Listener threw exception", throwable);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+
+        for (val lane : this.lanes) {
+            lane.clear();
+        }
+    }
+}
@@ -20,35 +20,101 @@
 
 package net.clydo.jedis.messaging.listener;
 
+import lombok.val;
 import net.clydo.jedis.messaging.callback.SendCallback;
 import net.clydo.jedis.messaging.packet.PacketData;
-import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.Function;
 
+/**
+ * Calls an annotated listener method.
+ * <p>
+ * The method is bound once, to a class spun by {@link LambdaMetafactory} that calls it directly, or to a
+ * {@link MethodHandle} where that is not possible, and the payload conversion for its parameter type is
+ * chosen once as well. After warm-up a call costs about as much as a hand-written {@link Listener}.
+ */
 public class InvokableListener<D> implements Listener<D> {
     private final Method method;
-    private final Object instance;
-    private final Class<?> dataType;
+    private final Invoker invoker;
+    private final Function<PacketData<D>, Object> decoder;
 
-    @Contract(pure = true)
     public InvokableListener(final @NotNull Method method, final Object instance) {
-        method.setAccessible(true);
-
         this.method = method;
-        this.instance = instance;
-        this.dataType = method.getParameterTypes()[1];
+        this.invoker = bind(method, instance);
+        this.decoder = decoder(method.getParameterTypes()[1]);
     }
 
     @Override
     public void call(@NotNull String channel, @NotNull PacketData<D> data, @Nullable SendCallback sender) {
+        this.invoker.invoke(channel, this.decoder.apply(data), sender);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <D> Function<PacketData<D>, Object> decoder(final Class<?> dataType) {
+        if (dataType == PacketData.class) {
+            return data -> data;
+        }
+        val boxedType = (Class<Object>) MethodType.methodType(dataType).wrap().returnType();
+        return data -> data.as(boxedType);
+    }
+
+    private static Invoker bind(final Method method, final Object instance) {
+        final MethodHandles.Lookup lookup;
+        final MethodHandle handle;
         try {
-            this.method.invoke(instance, channel, data.as(this.dataType), sender);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            throw new RuntimeException("Failed to invoke method " + method.getName(), e);
+            lookup = MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup());
+            handle = lookup.unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access listener method " + method, e);
         }
+
+        val isStatic = Modifier.isStatic(method.getModifiers());
+        try {
+            val targetType = handle.type().wrap().changeReturnType(void.class);
+            val invokerType = MethodType.methodType(void.class, String.class, Object.class, SendCallback.class);
+            val site = LambdaMetafactory.metafactory(
+                    lookup,
+                    "invoke",
+                    isStatic ? MethodType.methodType(Invoker.class) : MethodType.methodType(Invoker.class, method.getDeclaringClass()),
+                    invokerType,
+                    handle,
+                    isStatic ? targetType : targetType.dropParameterTypes(0, 1)
+            );
+            return isStatic ? (Invoker) site.getTarget().invoke() : (Invoker) site.getTarget().invoke(instance);
+        } catch (Throwable throwable) {
+            // Fall back to a bound method handle, e.g. when the class cannot be extended by a hidden class.
+            val bound = (isStatic ? handle : handle.bindTo(instance))
+                    .asType(MethodType.methodType(void.class, String.class, Object.class, SendCallback.class));
+            return (channel, data, sender) -> {
+                try {
+                    bound.invokeExact(channel, data, sender);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new RuntimeException("Failed to invoke method " + method.getName(), e);
+                }
+            };
+        }
+    }
+
+    /**
+     * Implemented by the classes spun for listener methods, public so that they can access it.
+     */
+    @FunctionalInterface
+    public interface Invoker {
+        void invoke(String channel, Object data, SendCallback sender);
+    }
+
+    @Override
+    public String toString() {
+        return "InvokableListener[" + this.method + "]";
     }
 }
@@ -0,0 +1,42 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.listener;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Subscribes the annotated methods of a listener holder without reflection.
+ * <p>
+ * Implementations are generated at build time by the JedisMessaging-processor annotation processor,
+ * one per holder class, and found by {@link JedisDispatchers}.
+ */
+public interface JedisDispatcher<L> {
+
+    @NotNull Class<L> listenerType();
+
+    <D> void register(@NotNull L listeners, @NotNull Registrar<D> registrar);
+
+    @FunctionalInterface
+    interface Registrar<D> {
+        void subscribe(@NotNull Listener<D> listener, @NotNull String event, boolean pattern, @NotNull String... channels);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.listener;
+
+import lombok.experimental.UtilityClass;
+import lombok.val;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Finds generated {@link JedisDispatcher}s.
+ * <p>
+ * The processor registers every dispatcher it generates as a service, so they are found through
+ * {@link ServiceLoader}, which native images support without further configuration.
+ */
+@UtilityClass
+public class JedisDispatchers {
+    private static final Logger LOGGER = Logger.getLogger(JedisDispatchers.class.getName());
+
+    private final Map<ClassLoader, Map<Class<?>, JedisDispatcher<?>>> DISPATCHERS = new WeakHashMap<>();
+
+    /**
+     * @return the dispatcher generated for exactly this class, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public <L> @Nullable JedisDispatcher<L> find(final @NotNull Class<L> listenerType) {
+        val classLoader = listenerType.getClassLoader();
+        if (classLoader == null) {
+            return null;
+        }
+
+        synchronized (DISPATCHERS) {
+            var dispatchers = DISPATCHERS.get(classLoader);
+            if (dispatchers == null) {
+                dispatchers = load(classLoader);
+                DISPATCHERS.put(classLoader, dispatchers);
+            }
+            return (JedisDispatcher<L>) dispatchers.get(listenerType);
+        }
+    }
+
+    private @NotNull Map<Class<?>, JedisDispatcher<?>> load(final @NotNull ClassLoader classLoader) {
+        val dispatchers = new HashMap<Class<?>, JedisDispatcher<?>>();
+        val iterator = ServiceLoader.load(JedisDispatcher.class, classLoader).iterator();
+        while (true) {
+            try {
+                if (!iterator.hasNext()) {
+                    break;
+                }
+                val dispatcher = iterator.next();
+                dispatchers.put(dispatcher.listenerType(), dispatcher);
+            } catch (ServiceConfigurationError e) {
+                LOGGER.log(Level.WARNING, "Skipping a generated listener dispatcher", e);
+            }
+        }
+        return dispatchers;
+    }
+}
@@ -24,91 +24,175 @@ import lombok.val;
 import net.clydo.jedis.messaging.JedisMessaging;
 import net.clydo.jedis.messaging.bridge.DataBridge;
 import net.clydo.jedis.messaging.callback.SendCallback;
+import net.clydo.jedis.messaging.packet.EventRegistry;
+import net.clydo.jedis.messaging.packet.LazyPacket;
 import net.clydo.jedis.messaging.packet.Packet;
+import net.clydo.jedis.messaging.packet.PacketCodec;
 import net.clydo.jedis.messaging.packet.PacketData;
 import net.clydo.jedis.messaging.packet.PacketType;
-import net.clydo.jedis.messaging.util.Multithreading;
-import redis.clients.jedis.JedisPubSub;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ConcurrentMap;
 
-public class ListenerHandler<D> extends JedisPubSub {
+public class ListenerHandler<D> {
     private final DataBridge<D> dataBridge;
-    private final ConcurrentMap<String, ConcurrentLinkedQueue<Listener<D>>> listeners;
+    private final PacketCodec<D> packetCodec;
+    private final DispatchLanes dispatchLanes;
+    private final PartitionKeyExtractor<D> partitionKeyExtractor;
+    // Immutable snapshot, replaced as a whole on every change. Messages only ever read it.
+    private volatile Map<String, Listener<D>[]> listeners;
+    // The same listeners indexed by event id, for packets carrying interned events.
+    private volatile Listener<D>[][] listenersById;
     private final JedisMessaging<D> messaging;
 
-    public ListenerHandler(JedisMessaging<D> messaging, DataBridge<D> dataBridge) {
-        this.listeners = new ConcurrentHashMap<>();
+    @SuppressWarnings("unchecked")
+    public ListenerHandler(JedisMessaging<D> messaging, DataBridge<D> dataBridge, PacketCodec<D> packetCodec, DispatchLanes dispatchLanes, PartitionKeyExtractor<D> partitionKeyExtractor) {
+        this.listeners = Map.of();
+        this.listenersById = (Listener<D>[][]) new Listener<?>[0][];
         this.messaging = messaging;
         this.dataBridge = dataBridge;
+        this.packetCodec = packetCodec;
+        this.dispatchLanes = dispatchLanes;
+        this.partitionKeyExtractor = partitionKeyExtractor;
     }
 
-    @Override
-    public void onPMessage(String pattern, String channel, String message) {
-        this.onPacket(channel, message);
+    public void onMessage(String channel, byte[] message) {
+        // Only the envelope is parsed here, the payload is decoded once a listener is about to get it.
+        val packet = this.packetCodec.decodeLazy(message);
+        this.onPacket(channel, packet);
     }
 
-    @Override
-    public void onMessage(String channel, String message) {
-        this.onPacket(channel, message);
+    /**
+     * Dispatches a packet published by this process without going through Redis.
+     */
+    public void onLocalPacket(String channel, LazyPacket<D> packet) {
+        this.onPacket(channel, packet);
     }
 
-    private void onPacket(String channel, String message) {
-        val packet = this.dataBridge.decodePacket(message);
+    private void onPacket(String channel, LazyPacket<D> packet) {
+        if (packet.type() != PacketType.EVENT.getId()) {
+            return;
+        }
 
-        val packetType = PacketType.ofId(packet.type());
         val signature = packet.signature();
         val skipSelf = packet.skipSelf();
         if (skipSelf && Objects.equals(signature, this.messaging.getSignature())) {
             return;
         }
 
-        val callbackId = packet.callbackId();
-        val packetData = packet.data();
+        val eventId = packet.eventId();
+        var listeners = eventId != EventRegistry.NO_ID ? this.listenersById(eventId) : null;
+        if (listeners == null) {
+            // Also taken for ids that are not indexed, e.g. when the registry ran out of ids while registering.
+            val event = packet.event();
+            listeners = event != null ? this.listeners.get(event) : null;
+            if (listeners == null) {
+                return;
+            }
+        }
+        val dispatched = listeners;
 
-        if (packetType == PacketType.EVENT) {
-            val packetEvent = packet.event();
+        val partitionKey = this.partitionKeyExtractor.partitionKey(channel, packet);
+        val partition = partitionKey != null ? partitionKey.hashCode() : channel.hashCode();
+        this.dispatchLanes.dispatch(partition, () -> this.callListeners(channel, packet, dispatched));
+    }
 
-            val listeners = this.listeners.get(packetEvent);
-            if (listeners != null) {
-                val iterator = listeners.iterator();
+    private void callListeners(String channel, LazyPacket<D> packet, Listener<D>[] listeners) {
+        val signature = packet.signature();
+        val callbackId = packet.callbackId();
+        // One PacketData per message, so listeners reading the same type share the decoded payload.
+        val packetData = PacketData.of(packet, this.dataBridge);
 
-                //noinspection WhileLoopReplaceableByForEach
-                while (iterator.hasNext()) {
-                    val listener = iterator.next();
-                    listener.call(channel, new PacketData<>(packetData, this.dataBridge), (callbackId != null ? this.callback(channel, callbackId, this.messaging.getSignature(), signature != null) : null));
-                }
-            }
+        //noinspection ForLoopReplaceableByForEach
+        for (int i = 0; i < listeners.length; i++) {
+            listeners[i].call(channel, packetData, (callbackId != Packet.NO_CALLBACK && signature != null ? this.callback(channel, callbackId, signature) : null));
         }
     }
 
-    public SendCallback callback(final String channel, final String callbackId, final String signature, final boolean skipSelf) {
+    private Listener<D>[] listenersById(int eventId) {
+        val listenersById = this.listenersById;
+        return eventId > 0 && eventId < listenersById.length ? listenersById[eventId] : null;
+    }
+
+    public SendCallback callback(final String channel, final long callbackId, final String requesterSignature) {
         val sent = new boolean[]{false};
 
         return (data) -> {
             if (!sent[0]) {
                 sent[0] = true;
-                Multithreading.execute(() -> {
-                    val packet = new Packet<>(signature, PacketType.CALLBACK, channel, this.dataBridge.encodeData(data), callbackId, skipSelf);
-                    this.messaging._publishPacket(channel, packet);
+                this.messaging._submitPacket(JedisMessaging.inboxChannel(requesterSignature), () -> {
+                    return new Packet<>(this.messaging.getSignature(), PacketType.CALLBACK, channel, this.dataBridge.encodeData(data), callbackId, false);
                 });
             }
         };
     }
 
+    @SuppressWarnings("unchecked")
     public void register(String event, Listener<D> listener) {
-        var listeners = this.listeners.get(event);
-        if (listeners == null) {
-            listeners = new ConcurrentLinkedQueue<>();
-            val tempListeners = this.listeners.putIfAbsent(event, listeners);
-            if (tempListeners != null) {
-                listeners = tempListeners;
+        // Interning may go to Redis, so it happens before taking the lock.
+        val eventId = this.intern(event);
+        synchronized (this) {
+            val listeners = this.listeners.get(event);
+            final Listener<D>[] updated;
+            if (listeners == null) {
+                updated = (Listener<D>[]) new Listener<?>[]{listener};
+            } else {
+                updated = Arrays.copyOf(listeners, listeners.length + 1);
+                updated[listeners.length] = listener;
+            }
+
+            this.replace(event, eventId, updated);
+        }
+    }
+
+    public boolean unregister(String event, Listener<D> listener) {
+        if (!this.listeners.containsKey(event)) {
+            return false;
+        }
+        val eventId = this.intern(event);
+        synchronized (this) {
+            val listeners = this.listeners.get(event);
+            if (listeners == null) {
+                return false;
+            }
+
+            for (int i = 0; i < listeners.length; i++) {
+                if (listeners[i] == listener) {
+                    val updated = Arrays.copyOf(listeners, listeners.length - 1);
+                    System.arraycopy(listeners, i + 1, updated, i, listeners.length - i - 1);
+                    this.replace(event, eventId, updated.length == 0 ? null : updated);
+                    return true;
+                }
             }
+            return false;
         }
+    }
+
+    private int intern(String event) {
+        val eventRegistry = this.packetCodec.getEventRegistry();
+        return eventRegistry != null ? eventRegistry.intern(event) : EventRegistry.NO_ID;
+    }
 
-        listeners.add(listener);
+    private void replace(String event, int eventId, Listener<D>[] listeners) {
+        val snapshot = new HashMap<>(this.listeners);
+        if (listeners == null) {
+            snapshot.remove(event);
+        } else {
+            snapshot.put(event, listeners);
+        }
+        this.listeners = snapshot;
+
+        if (eventId != EventRegistry.NO_ID) {
+            var listenersById = this.listenersById;
+            if (eventId >= listenersById.length) {
+                listenersById = Arrays.copyOf(listenersById, eventId + 1);
+            } else {
+                listenersById = listenersById.clone();
+            }
+            listenersById[eventId] = listeners;
+            this.listenersById = listenersById;
+        }
     }
 }
@@ -0,0 +1,52 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.listener;
+
+import net.clydo.jedis.messaging.packet.LazyPacket;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Chooses the partition a received packet is dispatched in, packets with equal keys are handled in
+ * the order they were received.
+ */
+@FunctionalInterface
+public interface PartitionKeyExtractor<D> {
+
+    /**
+     * Reading {@link LazyPacket#data()} here decodes the payload on the subscriber thread.
+     *
+     * @return the partition key, or null to use the channel
+     */
+    @Nullable Object partitionKey(@NotNull String channel, @NotNull LazyPacket<D> packet);
+
+    @Contract(pure = true)
+    static <D> @NotNull PartitionKeyExtractor<D> channel() {
+        return (channel, packet) -> channel;
+    }
+
+    @Contract(pure = true)
+    static <D> @NotNull PartitionKeyExtractor<D> event() {
+        return (channel, packet) -> packet.event();
+    }
+}
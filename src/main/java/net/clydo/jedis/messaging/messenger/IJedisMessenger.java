@@ -20,6 +20,12 @@
 
 package net.clydo.jedis.messaging.messenger;
 
-public interface IJedisMessenger extends IJedisPublisher, IJedisSubscriber {
+import java.io.Closeable;
+
+public interface IJedisMessenger extends IJedisPublisher, IJedisSubscriber, Closeable {
+
+    @Override
+    default void close() {
+    }
 
 }
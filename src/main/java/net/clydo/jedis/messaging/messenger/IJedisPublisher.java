@@ -20,8 +20,28 @@
 
 package net.clydo.jedis.messaging.messenger;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface IJedisPublisher {
 
     long publish(final String channel, final String message);
 
+    long publish(final String channel, final byte[] message);
+
+    default CompletableFuture<Long> publishAsync(final String channel, final String message) {
+        try {
+            return CompletableFuture.completedFuture(this.publish(channel, message));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    default CompletableFuture<Long> publishAsync(final String channel, final byte[] message) {
+        try {
+            return CompletableFuture.completedFuture(this.publish(channel, message));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
 }
@@ -22,10 +22,19 @@ package net.clydo.jedis.messaging.messenger;
 
 import redis.clients.jedis.JedisPubSub;
 
+import java.util.concurrent.Executor;
+
 public interface IJedisSubscriber {
 
     void subscribe(final JedisPubSub jedisPubSub, final String... channels);
 
     void subscribePattern(final JedisPubSub jedisPubSub, final String... patterns);
 
+    IJedisSubscription multiplex(final MessageSink sink);
+
+    // Runs the subscriber loops on the given executor, messengers that have no loops of their own may ignore it.
+    default IJedisSubscription multiplex(final MessageSink sink, final Executor executor) {
+        return this.multiplex(sink);
+    }
+
 }
@@ -0,0 +1,41 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.messenger;
+
+import java.io.Closeable;
+
+/**
+ * A single subscriber connection whose channels and patterns can be changed while it is live.
+ */
+public interface IJedisSubscription extends Closeable {
+
+    void addChannels(final String... channels);
+
+    void removeChannels(final String... channels);
+
+    void addPatterns(final String... patterns);
+
+    void removePatterns(final String... patterns);
+
+    @Override
+    void close();
+
+}
@@ -0,0 +1,256 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.messenger.impl;
+
+import lombok.val;
+import net.clydo.jedis.messaging.messenger.IJedisMessenger;
+import net.clydo.jedis.messaging.messenger.IJedisSubscription;
+import net.clydo.jedis.messaging.messenger.MessageSink;
+import net.clydo.jedis.messaging.util.HashRing;
+import org.jetbrains.annotations.NotNull;
+import redis.clients.jedis.JedisPubSub;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Spreads channels over several standalone Redis instances with a consistent-hash ring over the
+ * channel names, so every channel is published and subscribed on the same instance.
+ * <p>
+ * Patterns may match channels on any instance and are subscribed on all of them.
+ * <p>
+ * A node is added in two steps, see {@link #addNode(String, IJedisMessenger)}: subscribers first
+ * listen for the channels the node takes over on both their old and their new instance, and only
+ * stop listening on the old one once every publisher has switched to the new ring. This is not free
+ * of loss: until the last process has added the node, a process that already did publishes the moved
+ * channels on the new instance, where processes that have not added it yet do not listen. Add the
+ * node everywhere in a short window, or pause publishing on channels that must not lose messages.
+ */
+public class HashRingMessenger implements IJedisMessenger {
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final Map<String, IJedisMessenger> nodes;
+    private final Set<HashRingSubscription> subscriptions;
+    private volatile HashRing ring;
+    private Rebalance rebalance; // The node being added, until its rebalance completes.
+
+    /**
+     * @param nodes a messenger for every Redis instance, by a name that is the same in every process
+     */
+    public HashRingMessenger(final @NotNull Map<String, IJedisMessenger> nodes) {
+        this(nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * @param nodes        a messenger for every Redis instance, by a name that is the same in every process
+     * @param virtualNodes how many points every node gets on the ring, more points spread channels more evenly
+     */
+    public HashRingMessenger(final @NotNull Map<String, IJedisMessenger> nodes, final int virtualNodes) {
+        this.nodes = new ConcurrentHashMap<>(nodes);
+        this.subscriptions = ConcurrentHashMap.newKeySet();
+        this.ring = new HashRing(nodes.keySet(), virtualNodes);
+    }
+
+    HashRing ring() {
+        return this.ring;
+    }
+
+    IJedisMessenger node(final String name) {
+        return this.nodes.get(name);
+    }
+
+    void closed(final HashRingSubscription subscription) {
+        this.subscriptions.remove(subscription);
+    }
+
+    /**
+     * @return the name of the node the channel is published and subscribed on
+     */
+    public @NotNull String nodeFor(final @NotNull String channel) {
+        return this.ring.nodeFor(channel);
+    }
+
+    private IJedisMessenger messengerFor(final String channel) {
+        return this.nodes.get(this.ring.nodeFor(channel));
+    }
+
+    @Override
+    public long publish(String channel, String message) {
+        return this.messengerFor(channel).publish(channel, message);
+    }
+
+    @Override
+    public long publish(String channel, byte[] message) {
+        return this.messengerFor(channel).publish(channel, message);
+    }
+
+    @Override
+    public CompletableFuture<Long> publishAsync(String channel, String message) {
+        return this.messengerFor(channel).publishAsync(channel, message);
+    }
+
+    @Override
+    public CompletableFuture<Long> publishAsync(String channel, byte[] message) {
+        return this.messengerFor(channel).publishAsync(channel, message);
+    }
+
+    /**
+     * Only channels placed on the same node can share a blocking subscription.
+     */
+    @Override
+    public void subscribe(JedisPubSub jedisPubSub, String... channels) {
+        val ring = this.ring;
+        val nodes = new HashSet<String>();
+        for (String channel : channels) {
+            nodes.add(ring.nodeFor(channel));
+        }
+        if (nodes.size() != 1) {
+            throw new IllegalArgumentException("Channels are placed on different nodes " + nodes + ", use multiplex instead");
+        }
+
+        this.nodes.get(nodes.iterator().next()).subscribe(jedisPubSub, channels);
+    }
+
+    @Override
+    public void subscribePattern(JedisPubSub jedisPubSub, String... patterns) {
+        if (this.nodes.size() != 1) {
+            throw new UnsupportedOperationException("Patterns span every node, use multiplex instead");
+        }
+
+        this.nodes.values().iterator().next().subscribePattern(jedisPubSub, patterns);
+    }
+
+    @Override
+    public IJedisSubscription multiplex(MessageSink sink) {
+        return this.multiplex(sink, null);
+    }
+
+    /**
+     * @param executor runs the subscriber loops on every node, or null for the nodes' own executors
+     */
+    @Override
+    public synchronized IJedisSubscription multiplex(MessageSink sink, Executor executor) {
+        val subscription = new HashRingSubscription(this, sink, executor);
+        this.subscriptions.add(subscription);
+        if (this.rebalance != null) {
+            // Publishers that have not added the node yet still use the previous ring.
+            this.rebalance.join(subscription);
+        }
+        return subscription;
+    }
+
+    /**
+     * Adds a Redis instance to the ring. Only the channels the new node takes over move.
+     * <p>
+     * Live subscriptions start listening for those channels on the new node, while still listening on
+     * their old node, and publishes from this process go to the new node from now on. Once every
+     * process has added the node, {@link Rebalance#complete()} stops listening on the old nodes.
+     * <p>
+     * Subscribers in processes that have not added the node yet miss what this process publishes on
+     * the moved channels, until they add it too.
+     *
+     * @param name      the name of the node, the same in every process
+     * @param messenger the messenger for the new Redis instance
+     * @return the rebalance to complete once every process has added the node
+     */
+    public synchronized @NotNull Rebalance addNode(final @NotNull String name, final @NotNull IJedisMessenger messenger) {
+        if (this.nodes.containsKey(name)) {
+            throw new IllegalArgumentException("Node " + name + " is already part of the ring");
+        }
+        if (this.rebalance != null) {
+            throw new IllegalStateException("Complete the previous rebalance before adding another node");
+        }
+
+        this.nodes.put(name, messenger);
+        val rebalance = new Rebalance(this, this.ring, this.ring.with(name), name);
+        for (HashRingSubscription subscription : this.subscriptions) {
+            rebalance.join(subscription);
+        }
+
+        this.ring = rebalance.nextRing;
+        this.rebalance = rebalance;
+        return rebalance;
+    }
+
+    private synchronized void completed(final Rebalance rebalance) {
+        if (this.rebalance == rebalance) {
+            this.rebalance = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        for (IJedisMessenger messenger : this.nodes.values()) {
+            messenger.close();
+        }
+    }
+
+    /**
+     * A node being added to the ring, whose moved channels are still subscribed on their old nodes as well.
+     */
+    public static final class Rebalance {
+        private final HashRingMessenger messenger;
+        private final HashRing previousRing;
+        private final HashRing nextRing;
+        private final String node;
+        private final List<HashRingSubscription> subscriptions;
+        private final Set<String> movedChannels;
+
+        private Rebalance(final HashRingMessenger messenger, final HashRing previousRing, final HashRing nextRing, final String node) {
+            this.messenger = messenger;
+            this.previousRing = previousRing;
+            this.nextRing = nextRing;
+            this.node = node;
+            this.subscriptions = new CopyOnWriteArrayList<>();
+            this.movedChannels = ConcurrentHashMap.newKeySet();
+        }
+
+        private void join(final HashRingSubscription subscription) {
+            this.subscriptions.add(subscription);
+            this.movedChannels.addAll(subscription.prepareMove(this.previousRing, this.nextRing, this.node));
+        }
+
+        /**
+         * @return the subscribed channels of this process that moved to the new node
+         */
+        public @NotNull Set<String> getMovedChannels() {
+            return Collections.unmodifiableSet(this.movedChannels);
+        }
+
+        /**
+         * Stops listening for the moved channels on their old nodes.
+         */
+        public void complete() {
+            for (HashRingSubscription subscription : this.subscriptions) {
+                subscription.completeMove();
+            }
+            this.messenger.completed(this);
+        }
+    }
+}
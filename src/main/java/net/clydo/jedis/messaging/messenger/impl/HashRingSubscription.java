@@ -0,0 +1,181 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.messenger.impl;
+
+import lombok.val;
+import net.clydo.jedis.messaging.messenger.IJedisSubscription;
+import net.clydo.jedis.messaging.messenger.MessageSink;
+import net.clydo.jedis.messaging.util.HashRing;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Subscribes every channel on the node the ring of its {@link HashRingMessenger} places it on, and
+ * every pattern on all nodes. The subscription of a node is only opened once it is needed.
+ */
+public class HashRingSubscription implements IJedisSubscription {
+    private final HashRingMessenger messenger;
+    private final MessageSink sink;
+    private final Executor executor;
+    private final Map<String, IJedisSubscription> nodes;
+    private final Set<String> channels;
+    private final Set<String> patterns;
+    private final Map<String, String> moving; // Moved channel to the node it is still subscribed on until the move completes.
+    private HashRing previousRing; // Set while a node is being added, channels are then subscribed on their node in both rings.
+    private HashRing nextRing;
+    private boolean closed;
+
+    HashRingSubscription(final HashRingMessenger messenger, final MessageSink sink, final Executor executor) {
+        this.messenger = messenger;
+        this.sink = sink;
+        this.executor = executor;
+        this.nodes = new HashMap<>();
+        this.channels = new LinkedHashSet<>();
+        this.patterns = new LinkedHashSet<>();
+        this.moving = new HashMap<>();
+    }
+
+    @Override
+    public synchronized void addChannels(final String... channels) {
+        for (String channel : channels) {
+            if (this.channels.add(channel)) {
+                val node = this.nodeFor(channel);
+                this.node(node).addChannels(channel);
+
+                if (this.previousRing != null) {
+                    val previous = this.previousRing.nodeFor(channel);
+                    if (!previous.equals(node)) {
+                        this.moving.put(channel, previous);
+                        this.node(previous).addChannels(channel);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void removeChannels(final String... channels) {
+        for (String channel : channels) {
+            if (this.channels.remove(channel)) {
+                this.node(this.nodeFor(channel)).removeChannels(channel);
+
+                val previous = this.moving.remove(channel);
+                if (previous != null) {
+                    this.node(previous).removeChannels(channel);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void addPatterns(final String... patterns) {
+        for (String pattern : patterns) {
+            if (this.patterns.add(pattern)) {
+                for (String node : (this.nextRing != null ? this.nextRing : this.messenger.ring()).nodes()) {
+                    this.node(node).addPatterns(pattern);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void removePatterns(final String... patterns) {
+        for (String pattern : patterns) {
+            if (this.patterns.remove(pattern)) {
+                for (IJedisSubscription subscription : this.nodes.values()) {
+                    subscription.removePatterns(pattern);
+                }
+            }
+        }
+    }
+
+    /**
+     * Subscribes the channels the new ring moves to the added node there as well, and the patterns.
+     *
+     * @return the moved channels
+     */
+    synchronized List<String> prepareMove(final HashRing previousRing, final HashRing ring, final String addedNode) {
+        if (this.closed) {
+            return List.of();
+        }
+
+        this.previousRing = previousRing;
+        this.nextRing = ring;
+
+        val moved = new ArrayList<String>();
+        for (String channel : this.channels) {
+            if (ring.nodeFor(channel).equals(addedNode)) {
+                moved.add(channel);
+                this.moving.put(channel, this.previousRing.nodeFor(channel));
+            }
+        }
+
+        val subscription = this.node(addedNode);
+        if (!moved.isEmpty()) {
+            subscription.addChannels(moved.toArray(String[]::new));
+        }
+        if (!this.patterns.isEmpty()) {
+            subscription.addPatterns(this.patterns.toArray(String[]::new));
+        }
+        return moved;
+    }
+
+    synchronized void completeMove() {
+        if (this.closed) {
+            return;
+        }
+
+        for (Map.Entry<String, String> move : this.moving.entrySet()) {
+            this.node(move.getValue()).removeChannels(move.getKey());
+        }
+        this.moving.clear();
+        this.previousRing = null;
+        this.nextRing = null;
+    }
+
+    private String nodeFor(final String channel) {
+        return (this.nextRing != null ? this.nextRing : this.messenger.ring()).nodeFor(channel);
+    }
+
+    private IJedisSubscription node(final String name) {
+        return this.nodes.computeIfAbsent(name, node -> {
+            val messenger = this.messenger.node(node);
+            return this.executor != null ? messenger.multiplex(this.sink, this.executor) : messenger.multiplex(this.sink);
+        });
+    }
+
+    @Override
+    public synchronized void close() {
+        this.closed = true;
+        for (IJedisSubscription subscription : this.nodes.values()) {
+            subscription.close();
+        }
+        this.nodes.clear();
+        this.messenger.closed(this);
+    }
+}
@@ -23,25 +23,120 @@ package net.clydo.jedis.messaging.messenger.impl;
 import lombok.val;
 import net.clydo.jedis.messaging.bridge.JedisBridge;
 import net.clydo.jedis.messaging.messenger.IJedisMessenger;
+import net.clydo.jedis.messaging.messenger.IJedisSubscription;
+import net.clydo.jedis.messaging.messenger.MessageSink;
+import net.clydo.jedis.messaging.util.Multithreading;
 import redis.clients.jedis.JedisPubSub;
 import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.util.SafeEncoder;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class JedisMessenger implements IJedisMessenger {
+    private static final Logger LOGGER = Logger.getLogger(JedisMessenger.class.getName());
+
     private final JedisBridge jedisBridge;
+    private final JedisBridge publisherBridge;
+    private final PipelinedPublisher pipelinedPublisher;
+    private final Executor executor;
 
     public JedisMessenger(final JedisBridge jedisBridge) {
+        this(jedisBridge, Multithreading.getPOOL());
+    }
+
+    /**
+     * @param jedisBridge the Redis bridge
+     * @param executor    runs the subscriber loop
+     */
+    public JedisMessenger(final JedisBridge jedisBridge, final Executor executor) {
+        this(jedisBridge, jedisBridge, executor);
+    }
+
+    /**
+     * Creates a messenger that subscribes and publishes through separate bridges,
+     * for example a {@link net.clydo.jedis.messaging.bridge.StripedJedisBridge} for publishing.
+     *
+     * @param jedisBridge     the Redis bridge used to subscribe
+     * @param publisherBridge the Redis bridge used to publish
+     * @param executor        runs the subscriber loop
+     */
+    public JedisMessenger(final JedisBridge jedisBridge, final JedisBridge publisherBridge, final Executor executor) {
         this.jedisBridge = jedisBridge;
+        this.publisherBridge = publisherBridge;
+        this.pipelinedPublisher = null;
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a messenger that publishes through micro-batched pipelines on a dedicated connection.
+     *
+     * @param jedisBridge  the Redis bridge
+     * @param lingerMillis how long a message may wait for its batch to fill up
+     * @param maxBatchSize how many messages are flushed in one pipeline at most
+     */
+    public JedisMessenger(final JedisBridge jedisBridge, final long lingerMillis, final int maxBatchSize) {
+        this(jedisBridge, lingerMillis, maxBatchSize, Multithreading.getPOOL());
+    }
+
+    /**
+     * Creates a messenger that publishes through micro-batched pipelines on a dedicated connection.
+     *
+     * @param jedisBridge  the Redis bridge
+     * @param lingerMillis how long a message may wait for its batch to fill up
+     * @param maxBatchSize how many messages are flushed in one pipeline at most
+     * @param executor     runs the subscriber and publisher loops
+     */
+    public JedisMessenger(final JedisBridge jedisBridge, final long lingerMillis, final int maxBatchSize, final Executor executor) {
+        this.jedisBridge = jedisBridge;
+        this.publisherBridge = jedisBridge;
+        this.pipelinedPublisher = new PipelinedPublisher(jedisBridge, lingerMillis, maxBatchSize, executor);
+        this.executor = executor;
     }
 
     @Override
     public long publish(String channel, String message) {
-        return this.jedisBridge.bridge(jedis -> {
+        if (this.pipelinedPublisher != null) {
+            return this.pipelinedPublisher.publish(channel, message);
+        }
+
+        return this.publisherBridge.bridge(jedis -> {
             return jedis.publish(channel, message);
         });
     }
 
+    @Override
+    public long publish(String channel, byte[] message) {
+        if (this.pipelinedPublisher != null) {
+            return this.pipelinedPublisher.publish(channel, message);
+        }
+
+        return this.publisherBridge.bridge(jedis -> {
+            return jedis.publish(SafeEncoder.encode(channel), message);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> publishAsync(String channel, String message) {
+        if (this.pipelinedPublisher != null) {
+            return this.pipelinedPublisher.publishAsync(channel, message);
+        }
+
+        return IJedisMessenger.super.publishAsync(channel, message);
+    }
+
+    @Override
+    public CompletableFuture<Long> publishAsync(String channel, byte[] message) {
+        if (this.pipelinedPublisher != null) {
+            return this.pipelinedPublisher.publishAsync(channel, message);
+        }
+
+        return IJedisMessenger.super.publishAsync(channel, message);
+    }
+
     @Override
     public void subscribe(JedisPubSub jedisPubSub, String... channels) {
         val retryAttempts = new AtomicInteger(0);
@@ -88,4 +183,55 @@ public class JedisMessenger implements IJedisMessenger {
         }
     }
 
+    @Override
+    public IJedisSubscription multiplex(MessageSink sink) {
+        return this.multiplex(sink, this.executor);
+    }
+
+    @Override
+    public IJedisSubscription multiplex(MessageSink sink, Executor executor) {
+        val subscription = new MultiplexedSubscription(sink);
+        Multithreading.execute(executor, () -> this.subscribeMultiplexed(subscription));
+        return subscription;
+    }
+
+    private void subscribeMultiplexed(MultiplexedSubscription subscription) {
+        val retryAttempts = new AtomicInteger(0);
+
+        while (!subscription.isClosed()) {
+            try {
+                this.jedisBridge.bridge(jedis -> {
+                    jedis.subscribe(subscription, subscription.getControlChannel());
+                    retryAttempts.set(0);
+                });
+            } catch (RuntimeException e) {
+                if (subscription.isClosed()) {
+                    return;
+                }
+                if (!(e instanceof JedisConnectionException)) {
+                    LOGGER.log(Level.WARNING, "Subscriber connection failed", e);
+                }
+
+                val attempts = retryAttempts.incrementAndGet();
+                val backoffTime = Math.min(1000 * attempts, 30000);
+
+                try {
+                    Thread.sleep(backoffTime);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } finally {
+                subscription.disconnected();
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this.pipelinedPublisher != null) {
+            this.pipelinedPublisher.close();
+        }
+    }
+
 }
@@ -0,0 +1,162 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.messenger.impl;
+
+import lombok.Getter;
+import net.clydo.jedis.messaging.messenger.IJedisSubscription;
+import net.clydo.jedis.messaging.messenger.MessageSink;
+import redis.clients.jedis.BinaryJedisPubSub;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Multiplexes every channel and pattern onto one subscriber connection.
+ * <p>
+ * The connection is held open by a private control channel, so channels and patterns can be added
+ * and removed with SUBSCRIBE/PSUBSCRIBE on the live connection. Whenever the control channel is
+ * (re)subscribed, all known channels and patterns are sent again, which also covers reconnects.
+ */
+public class MultiplexedSubscription extends BinaryJedisPubSub implements IJedisSubscription {
+    private static final Logger LOGGER = Logger.getLogger(MultiplexedSubscription.class.getName());
+
+    private final MessageSink sink;
+    private final Set<String> channels;
+    private final Set<String> patterns;
+    @Getter
+    private final byte[] controlChannel;
+    private volatile boolean ready;
+    @Getter
+    private volatile boolean closed;
+
+    public MultiplexedSubscription(final MessageSink sink) {
+        this.sink = sink;
+        this.channels = ConcurrentHashMap.newKeySet();
+        this.patterns = ConcurrentHashMap.newKeySet();
+        this.controlChannel = SafeEncoder.encode("jedis-messaging:multiplex:" + UUID.randomUUID());
+    }
+
+    @Override
+    public void addChannels(final String... channels) {
+        this.update(this.channels::addAll, this::subscribe, channels);
+    }
+
+    @Override
+    public void removeChannels(final String... channels) {
+        this.update(this.channels::removeAll, this::unsubscribe, channels);
+    }
+
+    @Override
+    public void addPatterns(final String... patterns) {
+        this.update(this.patterns::addAll, this::psubscribe, patterns);
+    }
+
+    @Override
+    public void removePatterns(final String... patterns) {
+        this.update(this.patterns::removeAll, this::punsubscribe, patterns);
+    }
+
+    private void update(final Consumer<Set<String>> registry, final Consumer<byte[][]> command, final String... names) {
+        if (names == null || names.length == 0) {
+            return;
+        }
+
+        registry.accept(Set.of(names));
+
+        if (this.ready) {
+            this.send(command, names);
+        }
+    }
+
+    private synchronized void send(final Consumer<byte[][]> command, final String... names) {
+        try {
+            command.accept(SafeEncoder.encodeMany(names));
+        } catch (JedisException ignored) {
+            // The connection is gone, everything is resubscribed once the control channel is back.
+        }
+    }
+
+    @Override
+    public void onSubscribe(byte[] channel, int subscribedChannels) {
+        if (!Arrays.equals(this.controlChannel, channel)) {
+            return;
+        }
+
+        this.ready = true;
+
+        if (!this.channels.isEmpty()) {
+            this.send(this::subscribe, this.channels.toArray(String[]::new));
+        }
+        if (!this.patterns.isEmpty()) {
+            this.send(this::psubscribe, this.patterns.toArray(String[]::new));
+        }
+    }
+
+    @Override
+    public void onMessage(byte[] channel, byte[] message) {
+        if (Arrays.equals(this.controlChannel, channel)) {
+            return;
+        }
+        this.deliver(null, SafeEncoder.encode(channel), message);
+    }
+
+    @Override
+    public void onPMessage(byte[] pattern, byte[] channel, byte[] message) {
+        this.deliver(SafeEncoder.encode(pattern), SafeEncoder.encode(channel), message);
+    }
+
+    private void deliver(final String pattern, final String channel, final byte[] message) {
+        // Every channel shares this connection, so one bad message must not end the subscription.
+        try {
+            this.sink.onMessage(pattern, channel, message);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to handle a message on " + channel, e);
+        }
+    }
+
+    /**
+     * Called once the subscriber connection is gone. Channels added until the control channel is
+     * subscribed again are only recorded, and sent along with all others on resubscription.
+     */
+    void disconnected() {
+        this.ready = false;
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+
+        if (this.ready) {
+            this.ready = false;
+            // Patterns first: the subscribe call returns once nothing is left, and a reply sent after
+            // that would stay unread on the connection when it goes back to the pool.
+            this.send(names -> this.punsubscribe());
+            this.send(names -> this.unsubscribe());
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.messenger.impl;
+
+import lombok.val;
+import net.clydo.jedis.messaging.bridge.JedisBridge;
+import net.clydo.jedis.messaging.messenger.IJedisPublisher;
+import net.clydo.jedis.messaging.util.Multithreading;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publishes messages in micro-batches through a {@link redis.clients.jedis.Pipeline} on a dedicated connection.
+ * <p>
+ * A batch is flushed once it reaches {@code maxBatchSize} messages or once the first message of the batch has
+ * waited {@code lingerMillis}, whichever comes first.
+ */
+public class PipelinedPublisher implements IJedisPublisher, Closeable {
+    private static final Logger LOGGER = Logger.getLogger(PipelinedPublisher.class.getName());
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final JedisBridge jedisBridge;
+    private final long lingerNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<PendingPublish> queue;
+    private volatile boolean closed;
+
+    public PipelinedPublisher(final JedisBridge jedisBridge, final long lingerMillis, final int maxBatchSize) {
+        this(jedisBridge, lingerMillis, maxBatchSize, Multithreading.getPOOL());
+    }
+
+    /**
+     * @param executor runs the publishing loop for as long as the publisher is open
+     */
+    public PipelinedPublisher(final JedisBridge jedisBridge, final long lingerMillis, final int maxBatchSize, final Executor executor) {
+        if (lingerMillis < 0) {
+            throw new IllegalArgumentException("lingerMillis must not be negative");
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+
+        this.jedisBridge = jedisBridge;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.queue = new LinkedBlockingQueue<>();
+
+        Multithreading.execute(executor, this::run);
+    }
+
+    @Override
+    public long publish(String channel, String message) {
+        return this.publishAsync(channel, message).join();
+    }
+
+    @Override
+    public long publish(String channel, byte[] message) {
+        return this.publishAsync(channel, message).join();
+    }
+
+    @Override
+    public CompletableFuture<Long> publishAsync(String channel, String message) {
+        return this.publishAsync(channel, SafeEncoder.encode(message));
+    }
+
+    @Override
+    public CompletableFuture<Long> publishAsync(String channel, byte[] message) {
+        val future = new CompletableFuture<Long>();
+        if (this.closed) {
+            future.completeExceptionally(new IllegalStateException("Publisher is closed"));
+            return future;
+        }
+
+        this.queue.add(new PendingPublish(SafeEncoder.encode(channel), message, future));
+        if (this.closed) {
+            // close() may have drained the queue before this publish was added.
+            this.failPending();
+        }
+        return future;
+    }
+
+    private void run() {
+        val retryAttempts = new AtomicInteger(0);
+
+        while (!this.closed) {
+            try {
+                this.jedisBridge.bridge(jedis -> {
+                    try {
+                        while (!this.closed) {
+                            val batch = this.nextBatch();
+                            if (!batch.isEmpty()) {
+                                this.flush(jedis, batch);
+                            }
+                            retryAttempts.set(0);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        this.close();
+                    }
+                });
+            } catch (RuntimeException e) {
+                if (!(e instanceof JedisConnectionException)) {
+                    LOGGER.log(Level.WARNING, "Pipelined publisher failed", e);
+                }
+
+                val attempts = retryAttempts.incrementAndGet();
+                val backoffTime = Math.min(1000 * attempts, 30000);
+
+                try {
+                    Thread.sleep(backoffTime);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    this.close();
+                }
+            }
+        }
+    }
+
+    private List<PendingPublish> nextBatch() throws InterruptedException {
+        val batch = new ArrayList<PendingPublish>(this.maxBatchSize);
+
+        val first = this.queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+
+        val deadline = System.nanoTime() + this.lingerNanos;
+        while (batch.size() < this.maxBatchSize) {
+            val remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                this.queue.drainTo(batch, this.maxBatchSize - batch.size());
+                break;
+            }
+
+            val next = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+
+        return batch;
+    }
+
+    private void flush(Jedis jedis, List<PendingPublish> batch) {
+        val responses = new ArrayList<Response<Long>>(batch.size());
+
+        try {
+            val pipeline = jedis.pipelined();
+            for (val pending : batch) {
+                responses.add(pipeline.publish(pending.channel(), pending.message()));
+            }
+            pipeline.sync();
+        } catch (JedisConnectionException e) {
+            batch.forEach(pending -> pending.future().completeExceptionally(e));
+            throw e;
+        } catch (RuntimeException e) {
+            batch.forEach(pending -> pending.future().completeExceptionally(e));
+            return;
+        }
+
+        // Every reply is checked on its own, a failing PUBLISH (e.g. NOPERM) only fails its own future.
+        for (int i = 0; i < batch.size(); i++) {
+            val future = batch.get(i).future();
+            try {
+                future.complete(responses.get(i).get());
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        this.failPending();
+    }
+
+    private void failPending() {
+        PendingPublish pending;
+        while ((pending = this.queue.poll()) != null) {
+            pending.future().completeExceptionally(new IllegalStateException("Publisher is closed"));
+        }
+    }
+
+    private record PendingPublish(byte[] channel, byte[] message, CompletableFuture<Long> future) {
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.messenger.impl;
+
+import net.clydo.jedis.messaging.messenger.IJedisMessenger;
+import net.clydo.jedis.messaging.messenger.IJedisSubscription;
+import net.clydo.jedis.messaging.messenger.MessageSink;
+import net.clydo.jedis.messaging.util.Multithreading;
+import org.jetbrains.annotations.NotNull;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisClientConfig;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.providers.ClusterConnectionProvider;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Publishes and subscribes through the sharded pub/sub of Redis Cluster 7, SPUBLISH and SSUBSCRIBE.
+ * <p>
+ * Unlike PUBLISH, a sharded message only travels to the shard owning the slot of its channel, so the
+ * pub/sub throughput grows with the number of shards. Subscriptions keep one connection per shard,
+ * see {@link ShardedSubscription}.
+ * <p>
+ * Sharded pub/sub has no patterns, pattern subscriptions are rejected.
+ */
+public class ShardedMessenger implements IJedisMessenger {
+    private final ClusterConnectionProvider provider;
+    private final JedisCluster cluster;
+    private final Executor executor;
+
+    public ShardedMessenger(final @NotNull Set<HostAndPort> nodes, final @NotNull JedisClientConfig clientConfig) {
+        this(new ClusterConnectionProvider(nodes, clientConfig), Multithreading.getPOOL());
+    }
+
+    /**
+     * @param provider the connections to the cluster, closed with this messenger
+     * @param executor runs a subscriber loop for every shard
+     */
+    public ShardedMessenger(final @NotNull ClusterConnectionProvider provider, final @NotNull Executor executor) {
+        this.provider = provider;
+        this.cluster = new JedisCluster(provider, JedisCluster.DEFAULT_MAX_ATTEMPTS, Duration.ofMillis((long) JedisCluster.DEFAULT_MAX_ATTEMPTS * JedisCluster.DEFAULT_TIMEOUT));
+        this.executor = executor;
+    }
+
+    @Override
+    public long publish(String channel, String message) {
+        return this.cluster.spublish(channel, message);
+    }
+
+    @Override
+    public long publish(String channel, byte[] message) {
+        return this.cluster.spublish(SafeEncoder.encode(channel), message);
+    }
+
+    @Override
+    public void subscribe(JedisPubSub jedisPubSub, String... channels) {
+        throw new UnsupportedOperationException("Sharded pub/sub needs a JedisShardedPubSub, use multiplex instead");
+    }
+
+    @Override
+    public void subscribePattern(JedisPubSub jedisPubSub, String... patterns) {
+        throw new UnsupportedOperationException("Sharded pub/sub has no patterns");
+    }
+
+    @Override
+    public IJedisSubscription multiplex(MessageSink sink) {
+        return this.multiplex(sink, this.executor);
+    }
+
+    @Override
+    public IJedisSubscription multiplex(MessageSink sink, Executor executor) {
+        return new ShardedSubscription(this.provider, sink, executor);
+    }
+
+    @Override
+    public void close() {
+        this.cluster.close();
+    }
+}
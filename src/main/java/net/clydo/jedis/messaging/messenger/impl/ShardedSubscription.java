@@ -0,0 +1,374 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.messenger.impl;
+
+import lombok.val;
+import net.clydo.jedis.messaging.messenger.IJedisSubscription;
+import net.clydo.jedis.messaging.messenger.MessageSink;
+import net.clydo.jedis.messaging.util.Multithreading;
+import redis.clients.jedis.BinaryJedisShardedPubSub;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.exceptions.JedisRedirectionException;
+import redis.clients.jedis.providers.ClusterConnectionProvider;
+import redis.clients.jedis.util.JedisClusterCRC16;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Subscribes channels with SSUBSCRIBE on one connection per shard.
+ * <p>
+ * Every channel goes to the subscriber of the node owning its hash slot. When a slot moves, Redis
+ * unsubscribes its channels on the old owner, or answers SSUBSCRIBE with MOVED; either way the slot
+ * cache is renewed and the channels are subscribed again on their new owner. A channel Redis refuses,
+ * e.g. because of an ACL, is logged and dropped, the other channels stay subscribed.
+ */
+public class ShardedSubscription implements IJedisSubscription {
+    private static final Logger LOGGER = Logger.getLogger(ShardedSubscription.class.getName());
+
+    private final ClusterConnectionProvider provider;
+    private final MessageSink sink;
+    private final Executor executor;
+    private final Set<String> channels;
+    private final Map<HostAndPort, ShardSubscriber> subscribers;
+    private volatile boolean closed;
+
+    public ShardedSubscription(final ClusterConnectionProvider provider, final MessageSink sink, final Executor executor) {
+        this.provider = provider;
+        this.sink = sink;
+        this.executor = executor;
+        this.channels = ConcurrentHashMap.newKeySet();
+        this.subscribers = new HashMap<>();
+    }
+
+    @Override
+    public void addChannels(final String... channels) {
+        for (String channel : channels) {
+            if (this.channels.add(channel)) {
+                this.route(channel);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void removeChannels(final String... channels) {
+        for (String channel : channels) {
+            if (this.channels.remove(channel)) {
+                for (ShardSubscriber subscriber : this.subscribers.values()) {
+                    subscriber.remove(channel);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void addPatterns(final String... patterns) {
+        throw new UnsupportedOperationException("Sharded pub/sub has no patterns");
+    }
+
+    @Override
+    public void removePatterns(final String... patterns) {
+        throw new UnsupportedOperationException("Sharded pub/sub has no patterns");
+    }
+
+    private synchronized void route(final String channel) {
+        if (this.closed || !this.channels.contains(channel)) {
+            return;
+        }
+
+        val node = this.provider.getNode(JedisClusterCRC16.getSlot(channel));
+        var subscriber = this.subscribers.get(node);
+        if (subscriber == null) {
+            subscriber = new ShardSubscriber(node);
+            this.subscribers.put(node, subscriber);
+            val started = subscriber;
+            Multithreading.execute(this.executor, started::run);
+        }
+        subscriber.add(channel);
+    }
+
+    /**
+     * Moves channels whose slot no longer belongs to the node they were subscribed on.
+     */
+    private void reroute(final ShardSubscriber from, final Set<String> channels) {
+        this.provider.renewSlotCache();
+        for (String channel : channels) {
+            from.forget(channel);
+            this.route(channel);
+        }
+    }
+
+    private synchronized void stopped(final ShardSubscriber subscriber) {
+        this.subscribers.remove(subscriber.node, subscriber);
+    }
+
+    @Override
+    public synchronized void close() {
+        this.closed = true;
+        for (ShardSubscriber subscriber : this.subscribers.values()) {
+            subscriber.close();
+        }
+        this.subscribers.clear();
+    }
+
+    // SSUBSCRIBE only takes channels of one slot, so channels are sent in one command per slot.
+    private static List<List<String>> bySlot(final Collection<String> channels) {
+        val slots = new HashMap<Integer, List<String>>();
+        for (String channel : channels) {
+            slots.computeIfAbsent(JedisClusterCRC16.getSlot(channel), slot -> new ArrayList<>()).add(channel);
+        }
+        return new ArrayList<>(slots.values());
+    }
+
+    /**
+     * The subscriber connection to one shard. Like {@link MultiplexedSubscription}, channels added while
+     * it is connecting are subscribed again once the first subscription is confirmed.
+     */
+    private final class ShardSubscriber extends BinaryJedisShardedPubSub {
+        private final HostAndPort node;
+        private final Set<String> channels;
+        // The channels of every SSUBSCRIBE not confirmed yet, oldest first. Redis answers in order, so an
+        // error reply belongs to the oldest command.
+        private final Deque<Set<String>> pending;
+        private volatile Set<String> initial;
+        private volatile boolean ready;
+        private volatile boolean stopped;
+
+        private ShardSubscriber(final HostAndPort node) {
+            this.node = node;
+            this.channels = ConcurrentHashMap.newKeySet();
+            this.pending = new ArrayDeque<>();
+            this.initial = Set.of();
+        }
+
+        void add(final String channel) {
+            this.channels.add(channel);
+            if (this.ready) {
+                this.subscribe(List.of(channel));
+            }
+        }
+
+        void remove(final String channel) {
+            if (this.channels.remove(channel) && this.ready) {
+                this.send(this::sunsubscribe, channel);
+            }
+        }
+
+        void forget(final String channel) {
+            this.channels.remove(channel);
+        }
+
+        private synchronized void subscribe(final Collection<String> channels) {
+            for (List<String> slot : bySlot(channels)) {
+                this.pending.add(new HashSet<>(slot));
+                if (!this.send(this::ssubscribe, slot.toArray(String[]::new))) {
+                    return;
+                }
+            }
+        }
+
+        private synchronized boolean send(final Consumer<byte[][]> command, final String... channels) {
+            try {
+                command.accept(SafeEncoder.encodeMany(channels));
+                return true;
+            } catch (JedisException ignored) {
+                // The connection is gone, everything is subscribed again once it is back.
+                return false;
+            }
+        }
+
+        private synchronized void confirmed(final String channel) {
+            val oldest = this.pending.peek();
+            if (oldest != null && oldest.remove(channel) && oldest.isEmpty()) {
+                this.pending.poll();
+            }
+        }
+
+        private synchronized Set<String> failed() {
+            val oldest = this.pending.peek();
+            return oldest != null ? Set.copyOf(oldest) : Set.of();
+        }
+
+        void run() {
+            try {
+                this.subscribeUntilStopped();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Shard subscriber for " + this.node + " failed", e);
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+            } finally {
+                this.ready = false;
+                this.stopped = true;
+                ShardedSubscription.this.stopped(this);
+                // Channels still here, or routed here while stopping, need another subscriber.
+                for (String channel : this.channels) {
+                    try {
+                        ShardedSubscription.this.route(channel);
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Failed to subscribe to " + channel, e);
+                    }
+                }
+            }
+        }
+
+        private void subscribeUntilStopped() {
+            val retryAttempts = new AtomicInteger(0);
+
+            while (!this.stopped && !ShardedSubscription.this.closed) {
+                val channels = Set.copyOf(this.channels);
+                if (channels.isEmpty()) {
+                    break;
+                }
+
+                val first = bySlot(channels).get(0);
+                synchronized (this) {
+                    this.pending.clear();
+                    this.pending.add(new HashSet<>(first));
+                    this.initial = Set.copyOf(first);
+                }
+
+                Connection connection = null;
+                try {
+                    connection = ShardedSubscription.this.provider.getConnection(this.node);
+                    this.proceed(connection, SafeEncoder.encodeMany(first.toArray(String[]::new)));
+                    retryAttempts.set(0);
+                } catch (JedisRedirectionException e) {
+                    // A slot of these channels has moved, send them to its new owner. The connection may
+                    // still be subscribed to the others, so it must not go back to the pool.
+                    this.ready = false;
+                    connection.setBroken();
+                    val moved = this.failed();
+                    ShardedSubscription.this.reroute(this, moved.isEmpty() ? channels : moved);
+                } catch (JedisDataException e) {
+                    // Refused for the channels of one command, e.g. by an ACL. Only those are dropped, unless
+                    // the connection itself was refused.
+                    this.ready = false;
+                    if (connection != null) {
+                        connection.setBroken();
+                    }
+                    val refused = connection != null ? this.failed() : Set.<String>of();
+                    LOGGER.log(Level.WARNING, "Failed to subscribe to " + refused + " on " + this.node, e);
+                    for (String channel : refused) {
+                        this.channels.remove(channel);
+                        ShardedSubscription.this.channels.remove(channel);
+                    }
+                    if (refused.isEmpty() && !this.backoff(retryAttempts)) {
+                        break;
+                    }
+                } catch (JedisConnectionException e) {
+                    this.ready = false;
+                    if (this.stopped || ShardedSubscription.this.closed) {
+                        break;
+                    }
+
+                    // The node may be gone for good, in which case its slots now belong to another one.
+                    try {
+                        ShardedSubscription.this.reroute(this, channels);
+                    } catch (JedisException rerouteException) {
+                        LOGGER.log(Level.FINE, "Failed to renew the slot cache", rerouteException);
+                    }
+
+                    if (!this.backoff(retryAttempts)) {
+                        break;
+                    }
+                } finally {
+                    if (connection != null) {
+                        connection.close();
+                    }
+                }
+            }
+        }
+
+        private boolean backoff(final AtomicInteger retryAttempts) {
+            val attempts = retryAttempts.incrementAndGet();
+            val backoffTime = Math.min(1000 * attempts, 30000);
+
+            try {
+                Thread.sleep(backoffTime);
+                return true;
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        @Override
+        public void onSSubscribe(byte[] channel, int subscribedChannels) {
+            this.confirmed(SafeEncoder.encode(channel));
+            if (this.ready) {
+                return;
+            }
+
+            this.ready = true;
+            val initial = this.initial;
+            this.subscribe(this.channels.stream().filter(name -> !initial.contains(name)).toList());
+        }
+
+        @Override
+        public void onSUnsubscribe(byte[] channel, int subscribedChannels) {
+            val name = SafeEncoder.encode(channel);
+            // Unsubscribed by the server, the slot of the channel was migrated to another node.
+            if (this.channels.contains(name) && ShardedSubscription.this.channels.contains(name)) {
+                Multithreading.execute(ShardedSubscription.this.executor, () -> ShardedSubscription.this.reroute(this, Set.of(name)));
+            }
+        }
+
+        @Override
+        public void onSMessage(byte[] channel, byte[] message) {
+            val name = SafeEncoder.encode(channel);
+            try {
+                ShardedSubscription.this.sink.onMessage(null, name, message);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Failed to handle a message on " + name, e);
+            }
+        }
+
+        void close() {
+            this.stopped = true;
+            if (this.ready) {
+                this.ready = false;
+                this.send(names -> this.sunsubscribe());
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.messenger.impl;
+
+import lombok.val;
+import net.clydo.jedis.messaging.bridge.JedisBridge;
+import net.clydo.jedis.messaging.messenger.IJedisMessenger;
+import net.clydo.jedis.messaging.messenger.IJedisSubscription;
+import net.clydo.jedis.messaging.messenger.MessageSink;
+import net.clydo.jedis.messaging.util.Multithreading;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.params.XAddParams;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+
+/**
+ * Delivers selected channels through Redis Streams and consumer groups instead of pub/sub, all other
+ * channels and every pattern go through a regular pub/sub messenger.
+ * <p>
+ * A stream channel is appended to with XADD, trimmed to roughly {@code maxLength} entries, and read
+ * with XREADGROUP in batches of up to {@code batchSize}. A batch is acknowledged with one pipelined
+ * XACK per stream once it has been handed to the sink. Messages published while a subscriber is
+ * disconnected wait in the stream, and messages it received but did not acknowledge before a crash
+ * are read again when a consumer with the same name comes back.
+ * <p>
+ * A message counts as handled once the sink returns. With {@code dispatchLanes} above 0 the sink
+ * only queues it for a lane, so a message acknowledged that way is lost if the process dies before
+ * a listener ran. Keep {@code dispatchLanes} at 0 when every message has to reach a listener.
+ * <p>
+ * Every consumer group gets each message once: instances sharing a group split the messages between
+ * them, instances in different groups all get every message. That includes the publisher: when it
+ * reads a message it published itself with {@code skipSelf}, as requests do, it acknowledges and
+ * drops it, and no other instance of its group gets it. Publishers of such messages should read in
+ * a group of their own.
+ */
+public class StreamMessenger implements IJedisMessenger {
+    public static final String DEFAULT_KEY_PREFIX = "jedis-messaging:stream:";
+    static final byte[] MESSAGE_FIELD = SafeEncoder.encode("m");
+
+    private final JedisBridge jedisBridge;
+    private final IJedisMessenger pubSub;
+    private final Predicate<String> streamChannels;
+    private final String keyPrefix;
+    private final byte[] group;
+    private final byte[] consumer;
+    private final XAddParams addParams;
+    private final int batchSize;
+    private final int blockMillis;
+    private final Executor executor;
+
+    private StreamMessenger(final @NotNull Builder builder) {
+        this.jedisBridge = builder.jedisBridge;
+        this.executor = builder.executor;
+        this.pubSub = builder.pubSub != null ? builder.pubSub : new JedisMessenger(builder.jedisBridge, builder.executor);
+        this.streamChannels = builder.streamChannels;
+        this.keyPrefix = builder.keyPrefix;
+        this.group = SafeEncoder.encode(builder.group);
+        this.consumer = SafeEncoder.encode(builder.consumer);
+        this.addParams = XAddParams.xAddParams().maxLen(builder.maxLength).approximateTrimming();
+        this.batchSize = builder.batchSize;
+        this.blockMillis = builder.blockMillis;
+    }
+
+    /**
+     * Creates a builder for a StreamMessenger.
+     *
+     * @param jedisBridge the Redis bridge
+     * @param group       the consumer group this instance reads stream channels in
+     * @return a new builder
+     */
+    @Contract("_, _ -> new")
+    public static @NotNull Builder builder(final @NotNull JedisBridge jedisBridge, final @NotNull String group) {
+        return new Builder(jedisBridge, group);
+    }
+
+    public boolean isStreamChannel(final String channel) {
+        return this.streamChannels.test(channel);
+    }
+
+    byte[] streamKey(final String channel) {
+        return SafeEncoder.encode(this.keyPrefix + channel);
+    }
+
+    /**
+     * Stream channels have no receiver count, publishing to one returns 1 once the entry is added.
+     */
+    @Override
+    public long publish(String channel, String message) {
+        return this.publish(channel, SafeEncoder.encode(message));
+    }
+
+    /**
+     * Stream channels have no receiver count, publishing to one returns 1 once the entry is added.
+     */
+    @Override
+    public long publish(String channel, byte[] message) {
+        if (!this.isStreamChannel(channel)) {
+            return this.pubSub.publish(channel, message);
+        }
+
+        this.jedisBridge.bridge(jedis -> {
+            return jedis.xadd(this.streamKey(channel), this.addParams, Map.of(MESSAGE_FIELD, message));
+        });
+        return 1;
+    }
+
+    @Override
+    public CompletableFuture<Long> publishAsync(String channel, String message) {
+        return this.publishAsync(channel, SafeEncoder.encode(message));
+    }
+
+    @Override
+    public CompletableFuture<Long> publishAsync(String channel, byte[] message) {
+        if (!this.isStreamChannel(channel)) {
+            return this.pubSub.publishAsync(channel, message);
+        }
+
+        return IJedisMessenger.super.publishAsync(channel, message);
+    }
+
+    @Override
+    public void subscribe(JedisPubSub jedisPubSub, String... channels) {
+        this.pubSub.subscribe(jedisPubSub, channels);
+    }
+
+    @Override
+    public void subscribePattern(JedisPubSub jedisPubSub, String... patterns) {
+        this.pubSub.subscribePattern(jedisPubSub, patterns);
+    }
+
+    @Override
+    public IJedisSubscription multiplex(MessageSink sink) {
+        return this.multiplex(sink, this.executor);
+    }
+
+    @Override
+    public IJedisSubscription multiplex(MessageSink sink, Executor executor) {
+        val subscription = new StreamSubscription(this, this.jedisBridge, this.pubSub.multiplex(sink, executor), sink, this.group, this.consumer, this.batchSize, this.blockMillis);
+        Multithreading.execute(executor, subscription::run);
+        return subscription;
+    }
+
+    @Override
+    public void close() {
+        this.pubSub.close();
+    }
+
+    /**
+     * Builder for {@link StreamMessenger} instances.
+     */
+    public static final class Builder {
+        private final JedisBridge jedisBridge;
+        private final String group;
+        private String consumer = "consumer-" + UUID.randomUUID();
+        private Predicate<String> streamChannels = channel -> false;
+        private IJedisMessenger pubSub;
+        private String keyPrefix = DEFAULT_KEY_PREFIX;
+        private long maxLength = 100_000;
+        private int batchSize = 128;
+        private int blockMillis = 1000;
+        private Executor executor = Multithreading.getPOOL();
+
+        private Builder(final @NotNull JedisBridge jedisBridge, final @NotNull String group) {
+            this.jedisBridge = jedisBridge;
+            this.group = group;
+        }
+
+        /**
+         * Defaults to a random name. Give every instance a stable name of its own to have the messages it
+         * did not acknowledge before a restart delivered again.
+         *
+         * @param consumer the name this instance reads stream channels under in its group
+         */
+        public Builder consumer(final @NotNull String consumer) {
+            this.consumer = consumer;
+            return this;
+        }
+
+        /**
+         * @param streamChannels selects the channels delivered through streams, by default none are
+         */
+        public Builder streamChannels(final @NotNull Predicate<String> streamChannels) {
+            this.streamChannels = streamChannels;
+            return this;
+        }
+
+        /**
+         * @param streamChannels the channels delivered through streams
+         */
+        public Builder streamChannels(final @NotNull String... streamChannels) {
+            return this.streamChannels(new HashSet<>(List.of(streamChannels))::contains);
+        }
+
+        /**
+         * @param pubSub the messenger all other channels and patterns go through, by default a {@link JedisMessenger}
+         */
+        public Builder pubSub(final @NotNull IJedisMessenger pubSub) {
+            this.pubSub = pubSub;
+            return this;
+        }
+
+        /**
+         * @param keyPrefix prepended to a channel to get the key of its stream
+         */
+        public Builder keyPrefix(final @NotNull String keyPrefix) {
+            this.keyPrefix = keyPrefix;
+            return this;
+        }
+
+        /**
+         * @param maxLength roughly how many entries a stream keeps, older ones are trimmed on XADD
+         */
+        public Builder maxLength(final long maxLength) {
+            this.maxLength = maxLength;
+            return this;
+        }
+
+        /**
+         * @param batchSize how many entries are read and acknowledged at once
+         */
+        public Builder batchSize(final int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param blockMillis how long a read waits for new entries, channels added meanwhile are read after that
+         */
+        public Builder blockMillis(final int blockMillis) {
+            this.blockMillis = blockMillis;
+            return this;
+        }
+
+        /**
+         * @param executor runs the stream reader and the default pub/sub messenger's subscriber loop
+         */
+        public Builder executor(final @NotNull Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public StreamMessenger build() {
+            if (this.batchSize < 1) {
+                throw new IllegalArgumentException("batchSize must be at least 1");
+            }
+            if (this.blockMillis < 1) {
+                throw new IllegalArgumentException("blockMillis must be at least 1");
+            }
+            return new StreamMessenger(this);
+        }
+    }
+}
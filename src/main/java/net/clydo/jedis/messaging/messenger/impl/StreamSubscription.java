@@ -0,0 +1,269 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.messenger.impl;
+
+import lombok.val;
+import net.clydo.jedis.messaging.bridge.JedisBridge;
+import net.clydo.jedis.messaging.messenger.IJedisSubscription;
+import net.clydo.jedis.messaging.messenger.MessageSink;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.params.XReadGroupParams;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads the stream channels of a {@link StreamMessenger} in its consumer group, and leaves all other
+ * channels and the patterns to a pub/sub subscription.
+ * <p>
+ * Each stream is first read from id 0, which returns the entries this consumer received earlier but
+ * never acknowledged, and only then from {@code >} for new entries. The same happens after the
+ * connection was lost, since the acknowledgements of the last batch may not have arrived.
+ */
+public class StreamSubscription implements IJedisSubscription {
+    private static final Logger LOGGER = Logger.getLogger(StreamSubscription.class.getName());
+    private static final long IDLE_POLL_MILLIS = 100;
+    private static final byte[] PENDING = SafeEncoder.encode("0");
+    private static final byte[] NEW = SafeEncoder.encode(">");
+
+    private final StreamMessenger messenger;
+    private final JedisBridge jedisBridge;
+    private final IJedisSubscription pubSub;
+    private final MessageSink sink;
+    private final byte[] group;
+    private final byte[] consumer;
+    private final int batchSize;
+    private final int blockMillis;
+    private final Set<String> channels;
+    private final Map<String, byte[]> cursors; // Only touched by the reader, the id each stream is read from.
+    private volatile boolean closed;
+
+    StreamSubscription(
+            final StreamMessenger messenger,
+            final JedisBridge jedisBridge,
+            final IJedisSubscription pubSub,
+            final MessageSink sink,
+            final byte[] group,
+            final byte[] consumer,
+            final int batchSize,
+            final int blockMillis
+    ) {
+        this.messenger = messenger;
+        this.jedisBridge = jedisBridge;
+        this.pubSub = pubSub;
+        this.sink = sink;
+        this.group = group;
+        this.consumer = consumer;
+        this.batchSize = batchSize;
+        this.blockMillis = blockMillis;
+        this.channels = ConcurrentHashMap.newKeySet();
+        this.cursors = new HashMap<>();
+    }
+
+    @Override
+    public void addChannels(final String... channels) {
+        val pubSubChannels = new ArrayList<String>(channels.length);
+        for (String channel : channels) {
+            if (this.messenger.isStreamChannel(channel)) {
+                this.channels.add(channel);
+            } else {
+                pubSubChannels.add(channel);
+            }
+        }
+        if (!pubSubChannels.isEmpty()) {
+            this.pubSub.addChannels(pubSubChannels.toArray(String[]::new));
+        }
+    }
+
+    @Override
+    public void removeChannels(final String... channels) {
+        val pubSubChannels = new ArrayList<String>(channels.length);
+        for (String channel : channels) {
+            if (this.messenger.isStreamChannel(channel)) {
+                this.channels.remove(channel);
+            } else {
+                pubSubChannels.add(channel);
+            }
+        }
+        if (!pubSubChannels.isEmpty()) {
+            this.pubSub.removeChannels(pubSubChannels.toArray(String[]::new));
+        }
+    }
+
+    @Override
+    public void addPatterns(final String... patterns) {
+        this.pubSub.addPatterns(patterns);
+    }
+
+    @Override
+    public void removePatterns(final String... patterns) {
+        this.pubSub.removePatterns(patterns);
+    }
+
+    void run() {
+        val retryAttempts = new AtomicInteger(0);
+
+        while (!this.closed && !Thread.currentThread().isInterrupted()) {
+            if (this.channels.isEmpty()) {
+                this.cursors.clear();
+                try {
+                    Thread.sleep(IDLE_POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+
+            try {
+                this.jedisBridge.bridge(jedis -> {
+                    this.read(jedis);
+                    retryAttempts.set(0);
+                });
+            } catch (RuntimeException e) {
+                if (this.closed) {
+                    return;
+                }
+                if (!(e instanceof JedisConnectionException)) {
+                    LOGGER.log(Level.WARNING, "Failed to read streams", e);
+                }
+                // Start over, which recreates missing groups and reads what was not acknowledged.
+                this.cursors.clear();
+
+                val attempts = retryAttempts.incrementAndGet();
+                val backoffTime = Math.min(1000 * attempts, 30000);
+
+                try {
+                    Thread.sleep(backoffTime);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void read(final Jedis jedis) {
+        this.cursors.keySet().retainAll(this.channels);
+        for (String channel : this.channels) {
+            if (!this.cursors.containsKey(channel)) {
+                this.createGroup(jedis, channel);
+                this.cursors.put(channel, PENDING);
+            }
+        }
+
+        var replaying = false;
+        val keys = new HashMap<String, String>(this.cursors.size());
+        @SuppressWarnings("unchecked")
+        Map.Entry<byte[], byte[]>[] streams = (Map.Entry<byte[], byte[]>[]) new Map.Entry<?, ?>[this.cursors.size()];
+        var index = 0;
+        for (Map.Entry<String, byte[]> cursor : this.cursors.entrySet()) {
+            val key = this.messenger.streamKey(cursor.getKey());
+            keys.put(SafeEncoder.encode(key), cursor.getKey());
+            streams[index++] = Map.entry(key, cursor.getValue());
+            replaying |= cursor.getValue() == PENDING;
+        }
+
+        // Unacknowledged entries are returned right away, only block once there are none left.
+        val params = XReadGroupParams.xReadGroupParams().count(this.batchSize);
+        if (!replaying) {
+            params.block(this.blockMillis);
+        }
+
+        val response = jedis.xreadGroup(this.group, this.consumer, params, streams);
+        if (response == null) {
+            return;
+        }
+
+        val acknowledgements = new HashMap<byte[], List<byte[]>>();
+        for (Object streamReply : response) {
+            val stream = (List<?>) streamReply;
+            val key = (byte[]) stream.get(0);
+            val channel = keys.get(SafeEncoder.encode(key));
+            val entries = (List<?>) stream.get(1);
+
+            if (entries.isEmpty() && this.cursors.get(channel) == PENDING) {
+                this.cursors.put(channel, NEW);
+                continue;
+            }
+
+            val ids = acknowledgements.computeIfAbsent(key, k -> new ArrayList<>(entries.size()));
+            for (Object entryReply : entries) {
+                val entry = (List<?>) entryReply;
+                ids.add((byte[]) entry.get(0));
+                this.deliver(channel, (List<?>) entry.get(1));
+            }
+        }
+
+        if (!acknowledgements.isEmpty()) {
+            val pipeline = jedis.pipelined();
+            for (Map.Entry<byte[], List<byte[]>> acknowledgement : acknowledgements.entrySet()) {
+                pipeline.xack(acknowledgement.getKey(), this.group, acknowledgement.getValue().toArray(byte[][]::new));
+            }
+            pipeline.sync();
+        }
+    }
+
+    private void deliver(final String channel, final List<?> fields) {
+        if (fields == null) {
+            return; // Trimmed from the stream before it was acknowledged.
+        }
+
+        for (int i = 0; i + 1 < fields.size(); i += 2) {
+            if (Arrays.equals(StreamMessenger.MESSAGE_FIELD, (byte[]) fields.get(i))) {
+                try {
+                    this.sink.onMessage(null, channel, (byte[]) fields.get(i + 1));
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.WARNING, "Failed to handle a message on " + channel, e);
+                }
+                return;
+            }
+        }
+    }
+
+    private void createGroup(final Jedis jedis, final String channel) {
+        try {
+            jedis.xgroupCreate(this.messenger.streamKey(channel), this.group, SafeEncoder.encode("$"), true);
+        } catch (JedisDataException e) {
+            if (e.getMessage() == null || !e.getMessage().startsWith("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        this.pubSub.close();
+    }
+}
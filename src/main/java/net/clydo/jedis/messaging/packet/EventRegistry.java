@@ -0,0 +1,170 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.packet;
+
+import lombok.Getter;
+import lombok.val;
+import net.clydo.jedis.messaging.bridge.JedisBridge;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps event names to small integers shared by every instance using the same Redis, so binary
+ * packets can carry the number instead of the name.
+ * <p>
+ * The numbers are handed out from a counter and kept in two Redis hashes, name to id and id to
+ * name. Both are cached locally, a name is only looked up in Redis the first time it is used.
+ * The keys share a hash tag, so the script assigning ids also runs on Redis Cluster.
+ * <p>
+ * Ids are never released, so the registry hands out at most {@code maxEvents} of them. Events
+ * coming after that keep being sent by name. Ids that are not in Redis are remembered for a
+ * second, so packets carrying them do not look them up again for every message.
+ */
+public class EventRegistry {
+    public static final String DEFAULT_NAMESPACE = "jedis-messaging:events";
+    public static final int NO_ID = 0;
+    public static final int DEFAULT_MAX_EVENTS = 4096;
+    private static final long MISS_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    // Assigns the next id unless the name has one already, both hashes are written atomically.
+    // Returns 0 once all ids are taken.
+    private static final String INTERN_SCRIPT = """
+            local id = redis.call('HGET', KEYS[1], ARGV[1])
+            if id then
+                return tonumber(id)
+            end
+            if tonumber(redis.call('GET', KEYS[3]) or '0') >= tonumber(ARGV[2]) then
+                return 0
+            end
+            id = redis.call('INCR', KEYS[3])
+            redis.call('HSET', KEYS[1], ARGV[1], id)
+            redis.call('HSET', KEYS[2], id, ARGV[1])
+            return id
+            """;
+
+    private final JedisBridge jedisBridge;
+    private final String namesKey;
+    private final String idsKey;
+    private final String sequenceKey;
+    @Getter
+    private final int maxEvents;
+    private final Map<String, Integer> ids;
+    private final Map<Integer, String> names;
+    // When an id was last missing in Redis, to look it up again at most once per MISS_RETRY_NANOS.
+    private final Map<Integer, Long> misses;
+    // Set once Redis ran out of ids and all assigned ids are cached, other names are then not looked up anymore.
+    private volatile boolean full;
+
+    public EventRegistry(final @NotNull JedisBridge jedisBridge) {
+        this(jedisBridge, DEFAULT_NAMESPACE);
+    }
+
+    public EventRegistry(final @NotNull JedisBridge jedisBridge, final @NotNull String namespace) {
+        this(jedisBridge, namespace, DEFAULT_MAX_EVENTS);
+    }
+
+    /**
+     * @param maxEvents how many event names get an id at most, shared by every instance using the namespace
+     */
+    public EventRegistry(final @NotNull JedisBridge jedisBridge, final @NotNull String namespace, final int maxEvents) {
+        if (maxEvents <= 0) {
+            throw new IllegalArgumentException("maxEvents must be positive");
+        }
+        this.jedisBridge = jedisBridge;
+        this.namesKey = "{" + namespace + "}:names";
+        this.idsKey = "{" + namespace + "}:ids";
+        this.sequenceKey = "{" + namespace + "}:sequence";
+        this.ids = new ConcurrentHashMap<>();
+        this.names = new ConcurrentHashMap<>();
+        this.misses = new ConcurrentHashMap<>();
+        this.maxEvents = maxEvents;
+    }
+
+    /**
+     * Returns the id of an event, assigning one if the event has none yet.
+     *
+     * @return the id, or {@link #NO_ID} once all {@link #getMaxEvents()} ids are taken
+     */
+    public int intern(final @NotNull String event) {
+        val cached = this.ids.get(event);
+        if (cached != null) {
+            return cached;
+        }
+        if (this.full) {
+            return NO_ID;
+        }
+
+        val id = Math.toIntExact(this.jedisBridge.bridge(jedis -> {
+            return (Long) jedis.eval(INTERN_SCRIPT, List.of(this.namesKey, this.idsKey, this.sequenceKey), List.of(event, Integer.toString(this.maxEvents)));
+        }));
+        if (id == NO_ID) {
+            // Names interned by other instances may not be cached yet, after this they never reach Redis.
+            val all = this.jedisBridge.bridge(jedis -> {
+                return jedis.hgetAll(this.namesKey);
+            });
+            all.forEach((name, value) -> this.cache(name, Integer.parseInt(value)));
+            this.full = true;
+            return this.ids.getOrDefault(event, NO_ID);
+        }
+        this.cache(event, id);
+        return id;
+    }
+
+    /**
+     * Returns the event with the given id, or null if no event has it.
+     */
+    public @Nullable String name(final int id) {
+        val cached = this.names.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        val missed = this.misses.get(id);
+        if (missed != null && System.nanoTime() - missed < MISS_RETRY_NANOS) {
+            return null;
+        }
+
+        val event = this.jedisBridge.bridge(jedis -> {
+            return jedis.hget(this.idsKey, Integer.toString(id));
+        });
+        if (event != null) {
+            this.misses.remove(id);
+            this.cache(event, id);
+        } else {
+            // Ids come from packets, so anyone can make up new ones. Dropping all misses keeps the map bounded.
+            if (this.misses.size() >= this.maxEvents) {
+                this.misses.clear();
+            }
+            this.misses.put(id, System.nanoTime());
+        }
+        return event;
+    }
+
+    private void cache(final String event, final int id) {
+        this.ids.put(event, id);
+        this.names.put(id, event);
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.packet;
+
+import lombok.val;
+import net.clydo.jedis.messaging.bridge.DataBridge;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A received packet whose envelope is parsed but whose payload is only decoded on first access.
+ */
+public final class LazyPacket<D> {
+    static final int NO_DATA = -1;
+
+    private final String signature;
+    private final int type;
+    private final int eventId;
+    private final EventRegistry eventRegistry;
+    private String event;
+    private final long callbackId;
+    private final boolean skipSelf;
+
+    private final DataBridge<D> dataBridge;
+    private final byte[] message;
+    private final int dataOffset;
+    private final int dataLength;
+    private D data;
+    private boolean decoded;
+    private boolean local;
+    private Object localData;
+
+    LazyPacket(
+            final String signature,
+            final int type,
+            final String event,
+            final int eventId,
+            final EventRegistry eventRegistry,
+            final long callbackId,
+            final boolean skipSelf,
+            final DataBridge<D> dataBridge,
+            final byte[] message,
+            final int dataOffset,
+            final int dataLength
+    ) {
+        this.signature = signature;
+        this.type = type;
+        this.event = event;
+        this.eventId = eventId;
+        this.eventRegistry = eventRegistry;
+        this.callbackId = callbackId;
+        this.skipSelf = skipSelf;
+        this.dataBridge = dataBridge;
+        this.message = message;
+        this.dataOffset = dataOffset;
+        this.dataLength = dataLength;
+    }
+
+    @Contract("_ -> new")
+    static <D> @NotNull LazyPacket<D> of(final @NotNull Packet<D> packet) {
+        val lazyPacket = new LazyPacket<D>(packet.signature(), packet.type(), packet.event(), EventRegistry.NO_ID, null, packet.callbackId(), packet.skipSelf(), null, null, NO_DATA, 0);
+        lazyPacket.data = packet.data();
+        lazyPacket.decoded = true;
+        return lazyPacket;
+    }
+
+    /**
+     * Creates a packet delivered within this process. It carries the published object itself, which
+     * is only encoded if somebody asks for {@link #data()}.
+     */
+    @Contract("_, _, _, _, _, _ -> new")
+    public static <D> @NotNull LazyPacket<D> local(
+            final String signature,
+            final int type,
+            final String event,
+            final long callbackId,
+            final @NotNull DataBridge<D> dataBridge,
+            final Object localData
+    ) {
+        val lazyPacket = new LazyPacket<D>(signature, type, event, EventRegistry.NO_ID, null, callbackId, false, dataBridge, null, NO_DATA, 0);
+        lazyPacket.local = true;
+        lazyPacket.localData = localData;
+        return lazyPacket;
+    }
+
+    public String signature() {
+        return this.signature;
+    }
+
+    public int type() {
+        return this.type;
+    }
+
+    /**
+     * Returns the event name, looking it up in the {@link EventRegistry} if the packet only carried its id.
+     */
+    public String event() {
+        if (this.event == null && this.eventId != EventRegistry.NO_ID && this.eventRegistry != null) {
+            this.event = this.eventRegistry.name(this.eventId);
+        }
+        return this.event;
+    }
+
+    /**
+     * @return the interned id of the event, or {@link EventRegistry#NO_ID} if the packet carried the name
+     */
+    public int eventId() {
+        return this.eventId;
+    }
+
+    public long callbackId() {
+        return this.callbackId;
+    }
+
+    public boolean skipSelf() {
+        return this.skipSelf;
+    }
+
+    /**
+     * Decodes the payload on first call.
+     */
+    public synchronized D data() {
+        if (!this.decoded) {
+            this.data = this.decodeData();
+            this.decoded = true;
+        }
+        return this.data;
+    }
+
+    public @NotNull Packet<D> toPacket() {
+        return new Packet<>(this.signature, this.type, this.event(), this.data(), this.callbackId, this.skipSelf);
+    }
+
+    boolean isLocal() {
+        return this.local;
+    }
+
+    Object localData() {
+        return this.localData;
+    }
+
+    private D decodeData() {
+        if (this.local) {
+            return this.dataBridge.encodeData(this.localData);
+        }
+        if (this.dataOffset == NO_DATA) {
+            return null;
+        }
+        try {
+            return this.dataBridge.decodeData(this.message, this.dataOffset, this.dataLength);
+        } catch (UnsupportedOperationException e) {
+            if (PacketCodec.isBinary(this.message)) {
+                throw e;
+            }
+            // The bridge can only read whole JSON packets.
+            return this.dataBridge.decodePacketBytes(this.message).data();
+        }
+    }
+}
@@ -22,15 +22,20 @@ package net.clydo.jedis.messaging.packet;
 
 import org.jetbrains.annotations.NotNull;
 
+/**
+ * @param callbackId the correlation id of the callback waiting for responses, scoped by the signature, or {@link #NO_CALLBACK}
+ */
 public record Packet<D>(
         String signature,
         int type,
         String event,
         D data,
-        String callbackId,
+        long callbackId,
         boolean skipSelf
 ) {
-    public Packet(final String signature, final @NotNull PacketType type, final String event, final D data, final String callbackId, final boolean skipSelf) {
+    public static final long NO_CALLBACK = 0L;
+
+    public Packet(final String signature, final @NotNull PacketType type, final String event, final D data, final long callbackId, final boolean skipSelf) {
         this(signature, type.getId(), event, data, callbackId, skipSelf);
     }
 }
@@ -0,0 +1,349 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.packet;
+
+import lombok.Getter;
+import lombok.val;
+import net.clydo.jedis.messaging.bridge.DataBridge;
+import net.clydo.jedis.messaging.util.JsonScanner;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.zip.Deflater;
+
+/**
+ * Turns packets into the bytes published to Redis and back.
+ * <p>
+ * Packets are either encoded as the {@link DataBridge}'s JSON text or as a binary envelope:
+ * <pre>
+ * byte     version ({@link #BINARY_VERSION})
+ * byte     type
+ * byte     flags
+ * 16 bytes sender id, the signature as UUID        (if {@link #FLAG_SIGNATURE})
+ * varint   correlation id                          (if {@link #FLAG_CALLBACK})
+ * varint   event length, followed by UTF-8 bytes   (if {@link #FLAG_EVENT})
+ * varint   event id from the {@link EventRegistry}  (if {@link #FLAG_EVENT_ID})
+ * bytes    payload, encoded by the DataBridge
+ * </pre>
+ * JSON text never starts with the version byte, so both formats are decoded side by side
+ * regardless of which one this codec encodes.
+ * <p>
+ * {@link #decodeLazy(byte[])} reads only the envelope, of either format, and leaves the payload
+ * to be decoded once somebody actually needs it.
+ * <p>
+ * With an {@link EventRegistry}, binary event packets carry the interned id of their event instead
+ * of its name. Every instance on the channel needs a registry on the same Redis to read them.
+ * <p>
+ * Encoded frames may additionally be compressed by a {@link PacketCompressor}, compressed frames
+ * are always recognized and inflated before decoding.
+ */
+public class PacketCodec<D> {
+    public static final byte BINARY_VERSION = 1;
+
+    public static final int FLAG_SKIP_SELF = 1;
+    public static final int FLAG_SIGNATURE = 1 << 1;
+    public static final int FLAG_CALLBACK = 1 << 2;
+    public static final int FLAG_EVENT = 1 << 3;
+    public static final int FLAG_EVENT_ID = 1 << 4;
+
+    private final DataBridge<D> dataBridge;
+    @Getter
+    private final boolean binary;
+    private final PacketCompressor compressor;
+    @Getter
+    private final @Nullable EventRegistry eventRegistry;
+
+    public PacketCodec(final DataBridge<D> dataBridge, final boolean binary) {
+        this(dataBridge, binary, new PacketCompressor(Integer.MAX_VALUE, null, Deflater.DEFAULT_COMPRESSION));
+    }
+
+    public PacketCodec(final DataBridge<D> dataBridge, final boolean binary, final @NotNull PacketCompressor compressor) {
+        this(dataBridge, binary, compressor, null);
+    }
+
+    public PacketCodec(final DataBridge<D> dataBridge, final boolean binary, final @NotNull PacketCompressor compressor, final @Nullable EventRegistry eventRegistry) {
+        this.dataBridge = dataBridge;
+        this.binary = binary;
+        this.compressor = compressor;
+        this.eventRegistry = eventRegistry;
+    }
+
+    /**
+     * Releases the pooled compression state.
+     */
+    public void close() {
+        this.compressor.close();
+    }
+
+    public byte @NotNull [] encode(final @NotNull Packet<D> packet) {
+        val frame = this.binary ? this.encodeBinary(packet) : this.dataBridge.encodePacketBytes(packet);
+        return this.compressor.compress(frame);
+    }
+
+    public @NotNull Packet<D> decode(byte @NotNull [] message) {
+        if (PacketCompressor.isCompressed(message)) {
+            message = this.compressor.decompress(message);
+        }
+        if (isBinary(message)) {
+            return this.decodeBinary(message);
+        }
+        return this.dataBridge.decodePacketBytes(message);
+    }
+
+    public @NotNull LazyPacket<D> decodeLazy(byte @NotNull [] message) {
+        if (PacketCompressor.isCompressed(message)) {
+            message = this.compressor.decompress(message);
+        }
+        if (isBinary(message)) {
+            return this.decodeBinaryLazy(message);
+        }
+        return this.decodeJsonLazy(message);
+    }
+
+    public static boolean isBinary(final byte @NotNull [] message) {
+        return message.length > 0 && message[0] == BINARY_VERSION;
+    }
+
+    private byte[] encodeBinary(final Packet<D> packet) {
+        val signature = packet.signature();
+        val callbackId = packet.callbackId();
+        // Only event names are interned, callbacks use the field for arbitrary channel names.
+        val eventId = this.eventRegistry != null && packet.event() != null && packet.type() == PacketType.EVENT.getId()
+                ? this.eventRegistry.intern(packet.event())
+                : EventRegistry.NO_ID;
+        val event = packet.event() != null && eventId == EventRegistry.NO_ID ? packet.event().getBytes(StandardCharsets.UTF_8) : null;
+        val payload = this.dataBridge.encodeDataBytes(packet.data());
+
+        var flags = 0;
+        var size = 3 + payload.length;
+        if (packet.skipSelf()) {
+            flags |= FLAG_SKIP_SELF;
+        }
+        if (signature != null) {
+            flags |= FLAG_SIGNATURE;
+            size += 16;
+        }
+        if (callbackId != Packet.NO_CALLBACK) {
+            flags |= FLAG_CALLBACK;
+            size += varLongSize(callbackId);
+        }
+        if (event != null) {
+            flags |= FLAG_EVENT;
+            size += varLongSize(event.length) + event.length;
+        }
+        if (eventId != EventRegistry.NO_ID) {
+            flags |= FLAG_EVENT_ID;
+            size += varLongSize(eventId);
+        }
+
+        val bytes = new byte[size];
+        var position = 0;
+        bytes[position++] = BINARY_VERSION;
+        bytes[position++] = (byte) packet.type();
+        bytes[position++] = (byte) flags;
+
+        if (signature != null) {
+            val uuid = UUID.fromString(signature);
+            position = writeLong(bytes, position, uuid.getMostSignificantBits());
+            position = writeLong(bytes, position, uuid.getLeastSignificantBits());
+        }
+        if (callbackId != Packet.NO_CALLBACK) {
+            position = writeVarLong(bytes, position, callbackId);
+        }
+        if (event != null) {
+            position = writeVarLong(bytes, position, event.length);
+            System.arraycopy(event, 0, bytes, position, event.length);
+            position += event.length;
+        }
+        if (eventId != EventRegistry.NO_ID) {
+            position = writeVarLong(bytes, position, eventId);
+        }
+
+        System.arraycopy(payload, 0, bytes, position, payload.length);
+        return bytes;
+    }
+
+    private Packet<D> decodeBinary(final byte[] bytes) {
+        return this.decodeBinaryLazy(bytes).toPacket();
+    }
+
+    private LazyPacket<D> decodeBinaryLazy(final byte[] bytes) {
+        if (bytes.length < 3) {
+            throw new IllegalArgumentException("Truncated packet header");
+        }
+        var position = 1;
+        val type = bytes[position++] & 0xFF;
+        val flags = bytes[position++] & 0xFF;
+
+        String signature = null;
+        if ((flags & FLAG_SIGNATURE) != 0) {
+            if (bytes.length - position < 16) {
+                throw new IllegalArgumentException("Truncated packet signature");
+            }
+            signature = new UUID(readLong(bytes, position), readLong(bytes, position + 8)).toString();
+            position += 16;
+        }
+
+        var callbackId = Packet.NO_CALLBACK;
+        if ((flags & FLAG_CALLBACK) != 0) {
+            callbackId = readVarLong(bytes, position);
+            position = skipVarLong(bytes, position);
+        }
+
+        String event = null;
+        if ((flags & FLAG_EVENT) != 0) {
+            val length = readVarLong(bytes, position);
+            position = skipVarLong(bytes, position);
+            if (length < 0 || length > bytes.length - position) {
+                throw new IllegalArgumentException("Event length " + Long.toUnsignedString(length) + " exceeds the packet");
+            }
+            event = new String(bytes, position, (int) length, StandardCharsets.UTF_8);
+            position += (int) length;
+        }
+
+        var eventId = EventRegistry.NO_ID;
+        if ((flags & FLAG_EVENT_ID) != 0) {
+            val id = readVarLong(bytes, position);
+            position = skipVarLong(bytes, position);
+            if (id <= EventRegistry.NO_ID || id > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid event id " + Long.toUnsignedString(id));
+            }
+            eventId = (int) id;
+        }
+
+        return new LazyPacket<>(signature, type, event, eventId, this.eventRegistry, callbackId, (flags & FLAG_SKIP_SELF) != 0, this.dataBridge, bytes, position, bytes.length - position);
+    }
+
+    private LazyPacket<D> decodeJsonLazy(final byte[] bytes) {
+        val packet = readJsonEnvelope(this.dataBridge, bytes);
+        if (packet == null) {
+            // Not the usual packet layout, leave it to the bridge.
+            return LazyPacket.of(this.dataBridge.decodePacketBytes(bytes));
+        }
+        return packet;
+    }
+
+    /**
+     * Reads the envelope of a packet in the JSON layout written by the bridges in this library,
+     * the payload is left to {@link DataBridge#decodeData(byte[], int, int)}.
+     *
+     * @return the packet, or null if the bytes are not in that layout, e.g. because a Gson naming policy renamed the fields
+     */
+    public static <D> @Nullable LazyPacket<D> readJsonEnvelope(final @NotNull DataBridge<D> dataBridge, final byte @NotNull [] bytes) {
+        String signature = null;
+        var type = -1;
+        String event = null;
+        var callbackId = Packet.NO_CALLBACK;
+        var skipSelf = false;
+        var dataOffset = LazyPacket.NO_DATA;
+        var dataLength = 0;
+
+        try {
+            val scanner = new JsonScanner(bytes);
+            scanner.beginObject();
+            while (scanner.nextMember()) {
+                switch (scanner.nextName()) {
+                    case "signature" -> signature = scanner.nextString();
+                    case "type" -> type = (int) scanner.nextLong();
+                    case "event" -> event = scanner.nextString();
+                    case "callbackId" -> callbackId = scanner.nextLong();
+                    case "skipSelf" -> skipSelf = scanner.nextBoolean();
+                    case "data" -> {
+                        if (!scanner.nextNull()) {
+                            dataOffset = scanner.skipValue();
+                            dataLength = scanner.getPosition() - dataOffset;
+                        }
+                    }
+                    default -> scanner.skipValue();
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (type < 0) {
+            // Every bridge writes the type, without it the fields carry other names.
+            return null;
+        }
+        return new LazyPacket<>(signature, type, event, EventRegistry.NO_ID, null, callbackId, skipSelf, dataBridge, bytes, dataOffset, dataLength);
+    }
+
+    private static int writeLong(final byte[] bytes, int position, final long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            bytes[position++] = (byte) (value >>> shift);
+        }
+        return position;
+    }
+
+    private static long readLong(final byte[] bytes, final int position) {
+        var value = 0L;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[position + i] & 0xFF);
+        }
+        return value;
+    }
+
+    static int writeVarLong(final byte[] bytes, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    static long readVarLong(final byte[] bytes, int position) {
+        var value = 0L;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position >= bytes.length) {
+                throw new IllegalArgumentException("Truncated varint");
+            }
+            val b = bytes[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Returns the position after the varint at {@code position}, which {@link #readVarLong(byte[], int)} already accepted.
+     * Unlike {@link #varLongSize(long)} of the value, this also holds for varints padded with empty groups.
+     */
+    static int skipVarLong(final byte[] bytes, int position) {
+        while ((bytes[position] & 0x80) != 0) {
+            position++;
+        }
+        return position + 1;
+    }
+
+    static int varLongSize(final long value) {
+        var size = 1;
+        var remaining = value >>> 7;
+        while (remaining != 0) {
+            size++;
+            remaining >>>= 7;
+        }
+        return size;
+    }
+}
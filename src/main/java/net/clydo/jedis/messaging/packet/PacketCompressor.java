@@ -0,0 +1,216 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.packet;
+
+import lombok.Getter;
+import lombok.val;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflates encoded packets above a size threshold.
+ * <p>
+ * A compressed frame is the {@link #COMPRESSED} marker, the varint length of the original frame and
+ * a zlib stream. When a preset dictionary is used, the zlib header carries its id, so receivers need
+ * the same dictionary but nothing else has to be agreed on.
+ * <p>
+ * The original length is checked against a limit before anything is allocated, as it comes from
+ * whoever published the frame.
+ */
+public class PacketCompressor implements Closeable {
+    public static final byte COMPRESSED = 2;
+    public static final int DEFAULT_MAX_DECOMPRESSED_SIZE = 16 * 1024 * 1024;
+    private static final int MAX_DEFLATE_RATIO = 1032; // zlib cannot inflate a stream by more than this factor.
+
+    @Getter
+    private final int threshold;
+    private final byte[] dictionary;
+    private final long dictionaryId;
+    private final int level;
+    @Getter
+    private final int maxDecompressedSize;
+    private final Queue<Deflater> deflaters;
+    private final Queue<Inflater> inflaters;
+    private volatile boolean closed;
+
+    /**
+     * @param threshold  the frame size in bytes from which frames are compressed
+     * @param dictionary the preset dictionary, containing byte sequences that are common in packets, or null
+     * @param level      the {@link Deflater} compression level
+     */
+    public PacketCompressor(final int threshold, final byte @Nullable [] dictionary, final int level) {
+        this(threshold, dictionary, level, DEFAULT_MAX_DECOMPRESSED_SIZE);
+    }
+
+    /**
+     * @param threshold           the frame size in bytes from which frames are compressed
+     * @param dictionary          the preset dictionary, containing byte sequences that are common in packets, or null
+     * @param level               the {@link Deflater} compression level
+     * @param maxDecompressedSize the largest frame in bytes a received frame may decompress to
+     */
+    public PacketCompressor(final int threshold, final byte @Nullable [] dictionary, final int level, final int maxDecompressedSize) {
+        if (maxDecompressedSize < 0) {
+            throw new IllegalArgumentException("maxDecompressedSize must not be negative");
+        }
+
+        this.threshold = threshold;
+        this.dictionary = dictionary != null ? dictionary.clone() : null;
+        this.dictionaryId = dictionary != null ? adler32(dictionary) : -1;
+        this.level = level;
+        this.maxDecompressedSize = maxDecompressedSize;
+        this.deflaters = new ConcurrentLinkedQueue<>();
+        this.inflaters = new ConcurrentLinkedQueue<>();
+    }
+
+    public static boolean isCompressed(final byte @NotNull [] frame) {
+        return frame.length > 0 && frame[0] == COMPRESSED;
+    }
+
+    /**
+     * @return the compressed frame, or the frame itself if it is below the threshold or does not shrink
+     */
+    public byte @NotNull [] compress(final byte @NotNull [] frame) {
+        val header = 1 + PacketCodec.varLongSize(frame.length);
+        if (frame.length < this.threshold || frame.length <= header) {
+            return frame;
+        }
+
+        var deflater = this.deflaters.poll();
+        if (deflater == null) {
+            deflater = new Deflater(this.level);
+        }
+        try {
+            if (this.dictionary != null) {
+                deflater.setDictionary(this.dictionary);
+            }
+            deflater.setInput(frame);
+            deflater.finish();
+
+            // Only worth it if the frame shrinks, so the output never has to grow beyond that.
+            val compressed = new byte[frame.length];
+            compressed[0] = COMPRESSED;
+            PacketCodec.writeVarLong(compressed, 1, frame.length);
+
+            var position = header;
+            while (!deflater.finished() && position < compressed.length) {
+                position += deflater.deflate(compressed, position, compressed.length - position);
+            }
+            if (!deflater.finished()) {
+                return frame;
+            }
+            return Arrays.copyOf(compressed, position);
+        } finally {
+            deflater.reset();
+            this.deflaters.offer(deflater);
+            if (this.closed) {
+                this.endPooled();
+            }
+        }
+    }
+
+    public byte @NotNull [] decompress(final byte @NotNull [] frame) {
+        val length = PacketCodec.readVarLong(frame, 1);
+        val offset = PacketCodec.skipVarLong(frame, 1);
+        if (length < 0 || length > (long) (frame.length - offset) * MAX_DEFLATE_RATIO) {
+            throw new IllegalArgumentException("Invalid compressed packet length: " + length);
+        }
+        if (length > this.maxDecompressedSize) {
+            throw new IllegalArgumentException("Compressed packet of " + length + " bytes exceeds the limit of " + this.maxDecompressedSize + " bytes");
+        }
+
+        var inflater = this.inflaters.poll();
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        try {
+            inflater.setInput(frame, offset, frame.length - offset);
+
+            val decompressed = new byte[(int) length];
+            var position = 0;
+            while (position < decompressed.length) {
+                val inflated = inflater.inflate(decompressed, position, decompressed.length - position);
+                if (inflated == 0) {
+                    if (inflater.needsDictionary()) {
+                        if (this.dictionary == null) {
+                            throw new IllegalArgumentException("Compressed packet needs a preset dictionary");
+                        }
+                        if (inflater.getAdler() != this.dictionaryId) {
+                            throw new IllegalArgumentException("Compressed packet needs a different preset dictionary");
+                        }
+                        inflater.setDictionary(this.dictionary);
+                    } else if (inflater.finished() || inflater.needsInput()) {
+                        throw new IllegalArgumentException("Truncated compressed packet");
+                    }
+                }
+                position += inflated;
+            }
+            if (!inflater.finished()) {
+                throw new IllegalArgumentException("Compressed packet is longer than its declared " + length + " bytes");
+            }
+            return decompressed;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Malformed compressed packet", e);
+        } finally {
+            inflater.reset();
+            this.inflaters.offer(inflater);
+            if (this.closed) {
+                this.endPooled();
+            }
+        }
+    }
+
+    /**
+     * Frees the native memory of the pooled deflaters and inflaters. Frames can still be handled
+     * afterwards, but without pooling.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        this.endPooled();
+    }
+
+    private static long adler32(final byte[] bytes) {
+        val adler = new Adler32();
+        adler.update(bytes);
+        return adler.getValue();
+    }
+
+    private void endPooled() {
+        Deflater deflater;
+        while ((deflater = this.deflaters.poll()) != null) {
+            deflater.end();
+        }
+        Inflater inflater;
+        while ((inflater = this.inflaters.poll()) != null) {
+            inflater.end();
+        }
+    }
+}
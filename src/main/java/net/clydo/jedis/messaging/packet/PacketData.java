@@ -18,30 +18,101 @@
  * Copyright (C) 2024 ClydoNetwork
  */
 
+
 package net.clydo.jedis.messaging.packet;
 
-import lombok.RequiredArgsConstructor;
+import lombok.val;
+import net.clydo.jedis.messaging.annotations.JedisMutable;
 import net.clydo.jedis.messaging.bridge.DataBridge;
+import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
-@RequiredArgsConstructor
+import java.util.HashMap;
+import java.util.Map;
+
 public final class PacketData<D> {
+    private static final ClassValue<Boolean> SHARED = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(@NotNull Class<?> type) {
+            return !type.isAnnotationPresent(JedisMutable.class);
+        }
+    };
+
     private final D data;
     private final DataBridge<D> dataBridge;
+    private final LazyPacket<D> packet; // Set instead of data for packets received from this process, see #of.
+
+    // Decoded payloads, shared by every listener of the message. Most messages are only read as one type.
+    private Class<?> decodedType;
+    private Object decoded;
+    private Map<Class<?>, Object> decodedOthers;
+
+    public PacketData(final D data, final DataBridge<D> dataBridge) {
+        this(data, dataBridge, null);
+    }
+
+    private PacketData(final D data, final DataBridge<D> dataBridge, final LazyPacket<D> packet) {
+        this.data = data;
+        this.dataBridge = dataBridge;
+        this.packet = packet;
+    }
+
+    /**
+     * Wraps the payload of a packet. The published object of a {@link LazyPacket#local local} packet is
+     * handed to listeners as is, when they ask for its type, and only encoded for other types.
+     */
+    @Contract("_, _ -> new")
+    public static <D> @NotNull PacketData<D> of(final @NotNull LazyPacket<D> packet, final @NotNull DataBridge<D> dataBridge) {
+        if (packet.isLocal()) {
+            return new PacketData<>(null, dataBridge, packet);
+        }
+        return new PacketData<>(packet.data(), dataBridge);
+    }
 
     public D raw() {
-        return this.data;
+        return this.packet != null ? this.packet.data() : this.data;
     }
 
+    /**
+     * Decodes the payload as the given type. The instance is decoded once per message and shared by
+     * all listeners, unless the type is annotated with {@link JedisMutable}.
+     */
     @SuppressWarnings("unchecked")
     public <T> T as(final @NotNull Class<T> clazz) {
         if (PacketData.class.equals(clazz)) {
             return (T) this;
         }
-        return this.dataBridge.dataAs(this.data, clazz);
+        if (!SHARED.get(clazz)) {
+            return this.dataBridge.dataAs(this.raw(), clazz);
+        }
+        if (this.packet != null && clazz.isInstance(this.packet.localData())) {
+            return clazz.cast(this.packet.localData());
+        }
+
+        synchronized (this) {
+            if (this.decodedType == clazz) {
+                return (T) this.decoded;
+            }
+            if (this.decodedType == null) {
+                val value = this.dataBridge.dataAs(this.raw(), clazz);
+                this.decoded = value;
+                this.decodedType = clazz;
+                return value;
+            }
+
+            if (this.decodedOthers == null) {
+                this.decodedOthers = new HashMap<>(4);
+            }
+            if (this.decodedOthers.containsKey(clazz)) {
+                return (T) this.decodedOthers.get(clazz);
+            }
+            val value = this.dataBridge.dataAs(this.raw(), clazz);
+            this.decodedOthers.put(clazz, value);
+            return value;
+        }
     }
 
     public <T> T cast(final @NotNull Class<T> clazz) {
-        return clazz.cast(this.data);
+        return clazz.cast(this.raw());
     }
 }
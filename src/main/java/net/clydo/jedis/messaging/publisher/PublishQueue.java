@@ -0,0 +1,163 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.publisher;
+
+import lombok.val;
+import net.clydo.jedis.messaging.util.Multithreading;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounded submission queue drained by a fixed number of publish workers.
+ */
+public class PublishQueue implements Closeable {
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final BlockingQueue<PublishTask> queue;
+    private final SaturationPolicy saturationPolicy;
+    private volatile boolean closed;
+
+    public PublishQueue(final int capacity, final int workers, final @NotNull SaturationPolicy saturationPolicy) {
+        this(capacity, workers, saturationPolicy, Multithreading.getPOOL());
+    }
+
+    /**
+     * @param executor runs the workers, it needs a thread for each of them for as long as the queue is open
+     */
+    public PublishQueue(final int capacity, final int workers, final @NotNull SaturationPolicy saturationPolicy, final @NotNull Executor executor) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be at least 1");
+        }
+
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.saturationPolicy = saturationPolicy;
+
+        for (int i = 0; i < workers; i++) {
+            Multithreading.execute(executor, this::work);
+        }
+    }
+
+    /**
+     * Queues a publish, applying the saturation policy if the queue is full.
+     *
+     * @param publish starts the publish on a worker and returns its receiver count
+     * @return a future completed with the receiver count once the publish is done
+     */
+    public CompletableFuture<Long> submit(final @NotNull Supplier<CompletableFuture<Long>> publish) {
+        val task = new PublishTask(publish, new CompletableFuture<>());
+        if (this.closed) {
+            task.future().completeExceptionally(new RejectedExecutionException("Publish queue is closed"));
+            return task.future();
+        }
+
+        switch (this.saturationPolicy) {
+            case BLOCK -> {
+                try {
+                    // Timed offers, so a caller waiting for room notices when the queue is closed.
+                    while (!this.queue.offer(task, IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        if (this.closed) {
+                            task.future().completeExceptionally(new RejectedExecutionException("Publish queue is closed"));
+                            return task.future();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    task.future().completeExceptionally(e);
+                }
+            }
+            case FAIL_FAST -> {
+                if (!this.queue.offer(task)) {
+                    task.future().completeExceptionally(new RejectedExecutionException("Publish queue is full"));
+                }
+            }
+            case DROP_OLDEST -> {
+                while (!this.queue.offer(task)) {
+                    val dropped = this.queue.poll();
+                    if (dropped != null) {
+                        dropped.future().completeExceptionally(new RejectedExecutionException("Dropped from a full publish queue"));
+                    }
+                }
+            }
+        }
+
+        if (this.closed) {
+            // close() may have drained the queue before this task was added.
+            this.rejectPending();
+        }
+
+        return task.future();
+    }
+
+    private void work() {
+        while (!this.closed) {
+            final PublishTask task;
+            try {
+                task = this.queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (task == null) {
+                continue;
+            }
+
+            try {
+                task.publish().get().whenComplete((receivers, throwable) -> {
+                    if (throwable != null) {
+                        task.future().completeExceptionally(throwable);
+                    } else {
+                        task.future().complete(receivers);
+                    }
+                });
+            } catch (Throwable throwable) {
+                task.future().completeExceptionally(throwable);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        this.rejectPending();
+    }
+
+    private void rejectPending() {
+        PublishTask task;
+        while ((task = this.queue.poll()) != null) {
+            task.future().completeExceptionally(new RejectedExecutionException("Publish queue is closed"));
+        }
+    }
+
+    private record PublishTask(Supplier<CompletableFuture<Long>> publish, CompletableFuture<Long> future) {
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.publisher;
+
+/**
+ * What a {@link PublishQueue} does with a new publish, or a {@link net.clydo.jedis.messaging.listener.DispatchLanes}
+ * lane with a new packet, while it is full.
+ */
+public enum SaturationPolicy {
+    /**
+     * Blocks the publishing thread until there is room in the queue.
+     */
+    BLOCK,
+    /**
+     * Completes the new publish exceptionally with a {@link java.util.concurrent.RejectedExecutionException}.
+     */
+    FAIL_FAST,
+    /**
+     * Drops the oldest queued publish, completing it exceptionally, to make room for the new one.
+     */
+    DROP_OLDEST
+}
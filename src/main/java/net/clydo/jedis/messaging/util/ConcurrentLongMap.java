@@ -0,0 +1,223 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.util;
+
+import lombok.val;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Lock-striped hash map with primitive {@code long} keys.
+ * <p>
+ * Each stripe is an open-addressing table with linear probing and backward-shift deletion, so
+ * neither keys nor entries are boxed. Values must not be null, a null value marks an empty slot.
+ */
+public class ConcurrentLongMap<V> {
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    private final Segment<V>[] segments;
+    private final int segmentMask;
+
+    public ConcurrentLongMap() {
+        this(Runtime.getRuntime().availableProcessors() * 4, 16);
+    }
+
+    /**
+     * @param concurrencyLevel how many stripes the map is split into, rounded up to a power of two
+     * @param initialCapacity  the initial capacity of each stripe, rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLongMap(final int concurrencyLevel, final int initialCapacity) {
+        val segmentCount = powerOfTwo(concurrencyLevel);
+        val segmentCapacity = powerOfTwo(Math.max(initialCapacity, 2));
+
+        this.segments = (Segment<V>[]) new Segment<?>[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment<>(segmentCapacity);
+        }
+        this.segmentMask = segmentCount - 1;
+    }
+
+    public @Nullable V get(final long key) {
+        val hash = hash(key);
+        return this.segmentFor(hash).get(key, hash);
+    }
+
+    public @Nullable V put(final long key, final @NotNull V value) {
+        val hash = hash(key);
+        return this.segmentFor(hash).put(key, hash, value);
+    }
+
+    public @Nullable V remove(final long key) {
+        val hash = hash(key);
+        return this.segmentFor(hash).remove(key, hash, null);
+    }
+
+    public boolean remove(final long key, final @NotNull V value) {
+        val hash = hash(key);
+        return this.segmentFor(hash).remove(key, hash, value) != null;
+    }
+
+    public int size() {
+        var size = 0;
+        for (val segment : this.segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    private Segment<V> segmentFor(final long hash) {
+        return this.segments[(int) (hash >>> 32) & this.segmentMask];
+    }
+
+    static long hash(final long key) {
+        val hash = key * GOLDEN_RATIO;
+        return hash ^ (hash >>> 29);
+    }
+
+    private static int powerOfTwo(final int value) {
+        var result = 1;
+        while (result < value) {
+            result <<= 1;
+        }
+        return result;
+    }
+
+    private static final class Segment<V> {
+        private long[] keys;
+        private Object[] values;
+        private int mask;
+        private int size;
+
+        private Segment(final int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            this.mask = capacity - 1;
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized V get(final long key, final long hash) {
+            var index = (int) hash & this.mask;
+            Object value;
+            while ((value = this.values[index]) != null) {
+                if (this.keys[index] == key) {
+                    return (V) value;
+                }
+                index = (index + 1) & this.mask;
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized V put(final long key, final long hash, final V value) {
+            var index = (int) hash & this.mask;
+            Object previous;
+            while ((previous = this.values[index]) != null) {
+                if (this.keys[index] == key) {
+                    this.values[index] = value;
+                    return (V) previous;
+                }
+                index = (index + 1) & this.mask;
+            }
+
+            this.keys[index] = key;
+            this.values[index] = value;
+            if (++this.size > (this.mask + 1) * 3 / 4) {
+                this.resize();
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized V remove(final long key, final long hash, final V expected) {
+            var index = (int) hash & this.mask;
+            Object value;
+            while ((value = this.values[index]) != null) {
+                if (this.keys[index] == key) {
+                    if (expected != null && expected != value) {
+                        return null;
+                    }
+
+                    this.shiftBack(index);
+                    this.size--;
+                    return (V) value;
+                }
+                index = (index + 1) & this.mask;
+            }
+            return null;
+        }
+
+        /**
+         * Closes the gap at {@code free} by moving back every following entry of the probe run that
+         * would otherwise become unreachable.
+         */
+        private void shiftBack(int free) {
+            var index = free;
+            while (true) {
+                index = (index + 1) & this.mask;
+                if (this.values[index] == null) {
+                    break;
+                }
+
+                val home = (int) hash(this.keys[index]) & this.mask;
+                val distance = (index - home) & this.mask;
+                val gap = (index - free) & this.mask;
+                if (distance >= gap) {
+                    this.keys[free] = this.keys[index];
+                    this.values[free] = this.values[index];
+                    free = index;
+                }
+            }
+
+            this.values[free] = null;
+        }
+
+        private void resize() {
+            val oldKeys = this.keys;
+            val oldValues = this.values;
+            val capacity = oldKeys.length << 1;
+
+            this.keys = new long[capacity];
+            this.values = new Object[capacity];
+            this.mask = capacity - 1;
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                val value = oldValues[i];
+                if (value == null) {
+                    continue;
+                }
+
+                var index = (int) hash(oldKeys[i]) & this.mask;
+                while (this.values[index] != null) {
+                    index = (index + 1) & this.mask;
+                }
+                this.keys[index] = oldKeys[i];
+                this.values[index] = value;
+            }
+        }
+    }
+}
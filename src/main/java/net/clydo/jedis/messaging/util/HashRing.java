@@ -0,0 +1,99 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.util;
+
+import lombok.val;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An immutable consistent-hash ring of named nodes.
+ * <p>
+ * Every node is placed on the ring at {@code virtualNodes} points, and a key belongs to the first
+ * node point at or after its hash. Adding a node therefore only takes over the keys between its
+ * points and their predecessors, about {@code 1 / nodes} of all keys, and leaves every other key
+ * where it was. Positions only depend on the node names, so every process builds the same ring.
+ */
+public final class HashRing {
+    private final TreeMap<Long, String> points;
+    private final Set<String> nodes;
+    private final int virtualNodes;
+
+    public HashRing(final @NotNull Collection<String> nodes, final int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("A hash ring needs at least one node");
+        }
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("virtualNodes must be at least 1");
+        }
+
+        this.points = new TreeMap<>();
+        this.nodes = Collections.unmodifiableSet(new LinkedHashSet<>(nodes));
+        this.virtualNodes = virtualNodes;
+        for (String node : this.nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                this.points.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    public @NotNull String nodeFor(final @NotNull String key) {
+        val point = this.points.ceilingEntry(hash(key));
+        return point != null ? point.getValue() : this.points.firstEntry().getValue();
+    }
+
+    public @NotNull Set<String> nodes() {
+        return this.nodes;
+    }
+
+    @Contract("_ -> new")
+    public @NotNull HashRing with(final @NotNull String node) {
+        val nodes = new LinkedHashSet<>(this.nodes);
+        nodes.add(node);
+        return new HashRing(nodes, this.virtualNodes);
+    }
+
+    /**
+     * 64-bit FNV-1a of the UTF-8 bytes, finished with the MurmurHash3 mixer to spread similar keys.
+     */
+    static long hash(final String key) {
+        var hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,412 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.util;
+
+import lombok.val;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timing wheel: scheduling and cancelling a timeout is O(1) and each tick only touches
+ * the timeouts hashed into its own bucket, regardless of how many timeouts are outstanding.
+ * <p>
+ * Expired tasks run on the wheel's worker thread and must be short. Timeouts that have neither
+ * expired nor been cancelled when the wheel stops are handed back by {@link #stop()}.
+ */
+public class HashedTimingWheel implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(HashedTimingWheel.class.getName());
+    private static final int WORKER_INIT = 0;
+    private static final int WORKER_STARTED = 1;
+    private static final int WORKER_SHUTDOWN = 2;
+
+    private final long tickNanos;
+    private final int mask;
+    private final Bucket[] buckets;
+    private final Queue<Timeout> pendingTimeouts;
+    private final Queue<Timeout> cancelledTimeouts;
+    private final long startTime;
+    private final AtomicInteger workerState;
+    private final CountDownLatch terminated;
+    private final Set<Timeout> unprocessed; // Filled by whoever stops the worker, read after terminated.
+    private volatile Thread worker;
+    private volatile boolean idle;
+    private volatile boolean closed;
+    private long tick; // Worker-only.
+    private long size; // Worker-only, timeouts currently sitting in buckets.
+
+    /**
+     * @param tickDuration how long one tick of the wheel lasts, which is the resolution of the timeouts
+     * @param unit         the unit of tickDuration
+     * @param ticksPerWheel how many buckets the wheel has, rounded up to a power of two
+     */
+    public HashedTimingWheel(final long tickDuration, final @NotNull TimeUnit unit, final int ticksPerWheel) {
+        this(tickDuration, unit, ticksPerWheel, Multithreading.getPOOL());
+    }
+
+    /**
+     * @param executor runs the worker of the wheel for as long as the wheel is open
+     */
+    public HashedTimingWheel(final long tickDuration, final @NotNull TimeUnit unit, final int ticksPerWheel, final @NotNull Executor executor) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be positive");
+        }
+        if (ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+            throw new IllegalArgumentException("ticksPerWheel must be between 1 and 2^30");
+        }
+
+        var wheelSize = 1;
+        while (wheelSize < ticksPerWheel) {
+            wheelSize <<= 1;
+        }
+
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.mask = wheelSize - 1;
+        this.buckets = new Bucket[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            this.buckets[i] = new Bucket();
+        }
+        this.pendingTimeouts = new ConcurrentLinkedQueue<>();
+        this.cancelledTimeouts = new ConcurrentLinkedQueue<>();
+        this.startTime = System.nanoTime();
+        this.workerState = new AtomicInteger(WORKER_INIT);
+        this.terminated = new CountDownLatch(1);
+        this.unprocessed = new HashSet<>();
+
+        Multithreading.execute(executor, this::run);
+    }
+
+    /**
+     * Schedules a task to run once the delay has elapsed.
+     *
+     * @param task  the task to run
+     * @param delay the delay
+     * @param unit  the unit of the delay
+     * @return a handle to cancel the task
+     */
+    public Timeout schedule(final @NotNull Runnable task, final long delay, final @NotNull TimeUnit unit) {
+        if (this.closed) {
+            throw new IllegalStateException("Timing wheel is closed");
+        }
+
+        val timeout = new Timeout(this, task, System.nanoTime() + unit.toNanos(delay) - this.startTime);
+        this.pendingTimeouts.add(timeout);
+        if (this.closed && this.pendingTimeouts.remove(timeout)) {
+            // Closed after the check above and not collected by stop(), so nobody would ever run it.
+            throw new IllegalStateException("Timing wheel is closed");
+        }
+
+        if (this.idle) {
+            LockSupport.unpark(this.worker);
+        }
+
+        return timeout;
+    }
+
+    private void run() {
+        if (!this.workerState.compareAndSet(WORKER_INIT, WORKER_STARTED)) {
+            return; // Stopped before the worker got to run.
+        }
+        this.worker = Thread.currentThread();
+
+        try {
+            this.tick();
+        } finally {
+            this.collectUnprocessed();
+            this.terminated.countDown();
+        }
+    }
+
+    private void tick() {
+        while (!this.closed) {
+            if (this.size == 0 && this.pendingTimeouts.isEmpty()) {
+                this.idle = true;
+                if (this.pendingTimeouts.isEmpty() && !this.closed) {
+                    LockSupport.park(this);
+                }
+                this.idle = false;
+
+                // Nothing is scheduled, so the wheel can jump straight to the current tick.
+                this.tick = Math.max(this.tick, (System.nanoTime() - this.startTime) / this.tickNanos);
+                continue;
+            }
+
+            if (!this.waitForNextTick()) {
+                continue;
+            }
+
+            this.removeCancelled();
+            this.transferPending();
+            this.buckets[(int) (this.tick & this.mask)].expire();
+            this.tick++;
+        }
+    }
+
+    private boolean waitForNextTick() {
+        val deadline = this.tickNanos * (this.tick + 1);
+
+        while (true) {
+            val sleepNanos = deadline - (System.nanoTime() - this.startTime);
+            if (sleepNanos <= 0) {
+                return true;
+            }
+            if (this.closed) {
+                return false;
+            }
+
+            LockSupport.parkNanos(this, sleepNanos);
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = this.pendingTimeouts.poll()) != null) {
+            if (timeout.state() == Timeout.ST_CANCELLED) {
+                continue;
+            }
+
+            val calculated = timeout.deadline / this.tickNanos;
+            timeout.remainingRounds = (calculated - this.tick) / this.buckets.length;
+
+            // Timeouts that are already due go into the current bucket.
+            val ticks = Math.max(calculated, this.tick);
+            this.buckets[(int) (ticks & this.mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = this.cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void collectUnprocessed() {
+        synchronized (this.unprocessed) {
+            for (Bucket bucket : this.buckets) {
+                bucket.drain(this.unprocessed);
+            }
+            Timeout timeout;
+            while ((timeout = this.pendingTimeouts.poll()) != null) {
+                if (timeout.state() == Timeout.ST_INIT) {
+                    this.unprocessed.add(timeout);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the wheel and waits for its worker to finish the tick it is in.
+     *
+     * @return the timeouts that neither expired nor were cancelled, their tasks never run
+     */
+    public @NotNull Set<Timeout> stop() {
+        if (Thread.currentThread() == this.worker) {
+            throw new IllegalStateException("The timing wheel cannot be stopped from one of its tasks");
+        }
+
+        this.closed = true;
+        val previous = this.workerState.getAndSet(WORKER_SHUTDOWN);
+        if (previous == WORKER_INIT) {
+            // The worker never started and never will, so nothing else touches the wheel.
+            this.collectUnprocessed();
+            this.terminated.countDown();
+        } else {
+            LockSupport.unpark(this.worker);
+        }
+
+        var interrupted = false;
+        while (true) {
+            try {
+                this.terminated.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this.unprocessed) {
+            val timeouts = Set.copyOf(this.unprocessed);
+            this.unprocessed.clear();
+            return timeouts;
+        }
+    }
+
+    /**
+     * Stops the wheel, dropping the timeouts that have not expired yet. Use {@link #stop()} to handle them.
+     */
+    @Override
+    public void close() {
+        this.stop();
+    }
+
+    public static final class Timeout {
+        private static final int ST_INIT = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE_UPDATER = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final HashedTimingWheel wheel;
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state;
+        private long remainingRounds;
+        private Timeout next;
+        private Timeout prev;
+        private Bucket bucket;
+
+        private Timeout(final HashedTimingWheel wheel, final Runnable task, final long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task if it has not run yet.
+         *
+         * @return whether the task was cancelled by this call
+         */
+        public boolean cancel() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_CANCELLED)) {
+                return false;
+            }
+            this.wheel.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        public @NotNull Runnable task() {
+            return this.task;
+        }
+
+        public boolean isCancelled() {
+            return this.state == ST_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return this.state == ST_EXPIRED;
+        }
+
+        private int state() {
+            return this.state;
+        }
+
+        private void expire() {
+            if (!STATE_UPDATER.compareAndSet(this, ST_INIT, ST_EXPIRED)) {
+                return;
+            }
+
+            try {
+                this.task.run();
+            } catch (Throwable throwable) {
+                LOGGER.log(Level.SEVERE, "Timeout task threw exception", throwable);
+            }
+        }
+    }
+
+    private final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        private void add(final Timeout timeout) {
+            timeout.bucket = this;
+            if (this.head == null) {
+                this.head = this.tail = timeout;
+            } else {
+                this.tail.next = timeout;
+                timeout.prev = this.tail;
+                this.tail = timeout;
+            }
+            HashedTimingWheel.this.size++;
+        }
+
+        private void expire() {
+            var timeout = this.head;
+
+            while (timeout != null) {
+                val next = timeout.next;
+
+                if (timeout.remainingRounds <= 0) {
+                    this.remove(timeout);
+                    timeout.expire();
+                } else if (timeout.isCancelled()) {
+                    this.remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+
+                timeout = next;
+            }
+        }
+
+        private void drain(final Set<Timeout> unprocessed) {
+            var timeout = this.head;
+            while (timeout != null) {
+                val next = timeout.next;
+                this.remove(timeout);
+                if (timeout.state() == Timeout.ST_INIT) {
+                    unprocessed.add(timeout);
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(final Timeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == this.head) {
+                this.head = timeout.next;
+            }
+            if (timeout == this.tail) {
+                this.tail = timeout.prev;
+            }
+
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            HashedTimingWheel.this.size--;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.util;
+
+import lombok.Getter;
+import lombok.val;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Forward-only scanner over UTF-8 encoded JSON.
+ * <p>
+ * It reads the members of an object one by one without building a tree, and values that are not
+ * needed are skipped in place, so their position can be kept as a slice of the input.
+ */
+public class JsonScanner {
+    private final byte[] bytes;
+    private final int limit;
+    @Getter
+    private int position;
+
+    public JsonScanner(final byte @NotNull [] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    public JsonScanner(final byte @NotNull [] bytes, final int offset, final int length) {
+        this.bytes = bytes;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    public void beginObject() {
+        this.expect('{');
+    }
+
+    /**
+     * Moves to the name of the next member of the current object.
+     *
+     * @return false once the end of the object was consumed
+     */
+    public boolean nextMember() {
+        var c = this.peek();
+        if (c == '}') {
+            this.position++;
+            return false;
+        }
+        if (c == ',') {
+            this.position++;
+            c = this.peek();
+        }
+        if (c != '"') {
+            throw this.malformed();
+        }
+        return true;
+    }
+
+    public @NotNull String nextName() {
+        val name = this.nextString();
+        if (name == null) {
+            throw this.malformed();
+        }
+        this.expect(':');
+        return name;
+    }
+
+    public boolean nextNull() {
+        if (this.peek() == 'n') {
+            this.literal("null");
+            return true;
+        }
+        return false;
+    }
+
+    public @Nullable String nextString() {
+        if (this.nextNull()) {
+            return null;
+        }
+        this.expect('"');
+        val start = this.position;
+        while (this.position < this.limit) {
+            val b = this.bytes[this.position];
+            if (b == '"') {
+                val string = new String(this.bytes, start, this.position - start, StandardCharsets.UTF_8);
+                this.position++;
+                return string;
+            }
+            if (b == '\\') {
+                return this.nextEscapedString(start);
+            }
+            this.position++;
+        }
+        throw this.malformed();
+    }
+
+    public long nextLong() {
+        val c = this.peek();
+        if (c != '-' && (c < '0' || c > '9')) {
+            throw this.malformed();
+        }
+        val start = this.skipValue();
+        val negative = c == '-';
+        var value = 0L;
+        for (int i = negative ? start + 1 : start; i < this.position; i++) {
+            val b = this.bytes[i];
+            if (b < '0' || b > '9' || i - start >= 18) {
+                return new BigDecimal(new String(this.bytes, start, this.position - start, StandardCharsets.US_ASCII)).longValue();
+            }
+            value = value * 10 + (b - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    public boolean nextBoolean() {
+        if (this.peek() == 't') {
+            this.literal("true");
+            return true;
+        }
+        this.literal("false");
+        return false;
+    }
+
+    /**
+     * Skips the next value, of any type, including nested objects and arrays.
+     *
+     * @return the position the value started at, the value ends at {@link #getPosition()}
+     */
+    public int skipValue() {
+        val c = this.peek();
+        val start = this.position;
+        switch (c) {
+            case '"' -> this.skipString();
+            case '{', '[' -> this.skipContainer();
+            case 't' -> this.literal("true");
+            case 'f' -> this.literal("false");
+            case 'n' -> this.literal("null");
+            default -> {
+                while (this.position < this.limit && isNumberPart(this.bytes[this.position])) {
+                    this.position++;
+                }
+                if (this.position == start) {
+                    throw this.malformed();
+                }
+            }
+        }
+        return start;
+    }
+
+    private void skipContainer() {
+        var depth = 0;
+        while (this.position < this.limit) {
+            val b = this.bytes[this.position];
+            if (b == '"') {
+                this.skipString();
+                continue;
+            }
+            if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                depth--;
+            }
+            this.position++;
+            if (depth == 0) {
+                return;
+            }
+        }
+        throw this.malformed();
+    }
+
+    private void skipString() {
+        this.position++;
+        while (this.position < this.limit) {
+            val b = this.bytes[this.position++];
+            if (b == '\\') {
+                this.position++;
+            } else if (b == '"') {
+                return;
+            }
+        }
+        throw this.malformed();
+    }
+
+    private String nextEscapedString(final int start) {
+        val builder = new StringBuilder(new String(this.bytes, start, this.position - start, StandardCharsets.UTF_8));
+        var chunk = this.position;
+        while (this.position < this.limit) {
+            val b = this.bytes[this.position];
+            if (b == '"') {
+                builder.append(new String(this.bytes, chunk, this.position - chunk, StandardCharsets.UTF_8));
+                this.position++;
+                return builder.toString();
+            }
+            if (b != '\\') {
+                this.position++;
+                continue;
+            }
+            builder.append(new String(this.bytes, chunk, this.position - chunk, StandardCharsets.UTF_8));
+            if (this.position + 1 >= this.limit) {
+                break;
+            }
+            val escaped = this.bytes[this.position + 1];
+            this.position += 2;
+            switch (escaped) {
+                case 'b' -> builder.append('\b');
+                case 'f' -> builder.append('\f');
+                case 'n' -> builder.append('\n');
+                case 'r' -> builder.append('\r');
+                case 't' -> builder.append('\t');
+                case 'u' -> {
+                    if (this.position + 4 > this.limit) {
+                        throw this.malformed();
+                    }
+                    var unit = 0;
+                    for (int i = 0; i < 4; i++) {
+                        val digit = Character.digit(this.bytes[this.position], 16);
+                        if (digit < 0) {
+                            throw this.malformed();
+                        }
+                        unit = (unit << 4) | digit;
+                        this.position++;
+                    }
+                    builder.append((char) unit);
+                }
+                default -> builder.append((char) escaped);
+            }
+            chunk = this.position;
+        }
+        throw this.malformed();
+    }
+
+    private void literal(final String literal) {
+        val length = literal.length();
+        if (this.position + length > this.limit) {
+            throw this.malformed();
+        }
+        for (int i = 0; i < length; i++) {
+            if (this.bytes[this.position + i] != literal.charAt(i)) {
+                throw this.malformed();
+            }
+        }
+        this.position += length;
+    }
+
+    private void expect(final char expected) {
+        if (this.peek() != expected) {
+            throw this.malformed();
+        }
+        this.position++;
+    }
+
+    private int peek() {
+        while (this.position < this.limit) {
+            val b = this.bytes[this.position];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return b;
+            }
+            this.position++;
+        }
+        throw this.malformed();
+    }
+
+    private static boolean isNumberPart(final byte b) {
+        return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E';
+    }
+
+    private IllegalArgumentException malformed() {
+        return new IllegalArgumentException("Malformed JSON at " + this.position);
+    }
+}
@@ -22,6 +22,7 @@ package net.clydo.jedis.messaging.util;
 
 import lombok.Getter;
 import lombok.experimental.UtilityClass;
+import lombok.val;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.concurrent.*;
@@ -33,9 +34,17 @@ import java.util.logging.Logger;
 public class Multithreading {
     private static final Logger LOGGER = Logger.getLogger(Multithreading.class.getName());
 
+    /**
+     * Set this system property to true to run tasks on virtual threads when the runtime supports them (Java 21+).
+     */
+    public static final String VIRTUAL_THREADS_PROPERTY = "jedis.messaging.virtualThreads";
+
     private static final ThreadFactory THREAD_FACTORY = new CustomThreadFactory("JedisMessaging");
+    private static final ThreadFactory VIRTUAL_THREAD_FACTORY = Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY) ? virtualThreadFactory("JedisMessaging-virtual-") : null;
     @Getter
-    private final ExecutorService POOL = Executors.newCachedThreadPool(THREAD_FACTORY);
+    private final ExecutorService POOL = VIRTUAL_THREAD_FACTORY != null
+            ? newThreadPerTaskExecutor(VIRTUAL_THREAD_FACTORY)
+            : Executors.newCachedThreadPool(THREAD_FACTORY);
     @Getter
     private final ScheduledExecutorService SCHEDULED_POOL = Executors.newScheduledThreadPool(
             Runtime.getRuntime().availableProcessors() + 1,
@@ -43,7 +52,14 @@ public class Multithreading {
     );
 
     public void execute(Runnable task) {
-        POOL.execute(() -> {
+        execute(POOL, task);
+    }
+
+    /**
+     * Runs a task on the given executor, logging anything it throws.
+     */
+    public void execute(@NotNull Executor executor, @NotNull Runnable task) {
+        executor.execute(() -> {
             try {
                 task.run();
             } catch (Throwable throwable) {
@@ -53,6 +69,29 @@ public class Multithreading {
         });
     }
 
+    /**
+     * Creates an executor that starts a daemon thread, or a virtual thread if enabled, for each task
+     * without an idle thread, so long-running worker loops never wait for each other.
+     *
+     * @param namePrefix the prefix of the thread names
+     */
+    public @NotNull ExecutorService newExecutor(final @NotNull String namePrefix) {
+        if (VIRTUAL_THREAD_FACTORY != null) {
+            val threadFactory = virtualThreadFactory(namePrefix + "-virtual-");
+            if (threadFactory != null) {
+                return newThreadPerTaskExecutor(threadFactory);
+            }
+        }
+        return Executors.newCachedThreadPool(new CustomThreadFactory(namePrefix));
+    }
+
+    /**
+     * @return whether tasks run on virtual threads
+     */
+    public boolean usesVirtualThreads() {
+        return VIRTUAL_THREAD_FACTORY != null;
+    }
+
     public ScheduledFuture<?> scheduleAtFixedRate(Runnable r, long initialDelay, long delay, TimeUnit unit) {
         return SCHEDULED_POOL.scheduleAtFixedRate(r, initialDelay, delay, unit);
     }
@@ -77,6 +116,31 @@ public class Multithreading {
         }
     }
 
+    /**
+     * Looked up reflectively, as the library targets Java 17.
+     *
+     * @return a factory for named virtual threads, or null if the runtime has no virtual threads
+     */
+    private static ThreadFactory virtualThreadFactory(final String namePrefix) {
+        try {
+            val ofVirtual = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            var builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = ofVirtual.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return (ThreadFactory) ofVirtual.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            LOGGER.log(Level.WARNING, "Virtual threads are not available, using platform threads");
+            return null;
+        }
+    }
+
+    private static ExecutorService newThreadPerTaskExecutor(final ThreadFactory threadFactory) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, threadFactory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual thread executor is not available", e);
+        }
+    }
+
     private static class CustomThreadFactory implements ThreadFactory {
         private final AtomicInteger threadNumber = new AtomicInteger(1);
         private final String namePrefix;
@@ -0,0 +1,116 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.util;
+
+import lombok.experimental.UtilityClass;
+import lombok.val;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Matches channels against PSUBSCRIBE patterns the way Redis does: {@code *}, {@code ?},
+ * {@code [abc]}, {@code [^abc]}, {@code [a-z]} and {@code \} escapes.
+ */
+@UtilityClass
+public class RedisGlob {
+
+    public boolean matches(final @NotNull String pattern, final @NotNull String channel) {
+        return matches(pattern, 0, channel, 0);
+    }
+
+    private boolean matches(final String pattern, int p, final String channel, int c) {
+        while (p < pattern.length()) {
+            switch (pattern.charAt(p)) {
+                case '*' -> {
+                    while (p + 1 < pattern.length() && pattern.charAt(p + 1) == '*') {
+                        p++;
+                    }
+                    if (p + 1 == pattern.length()) {
+                        return true;
+                    }
+                    for (int i = c; i <= channel.length(); i++) {
+                        if (matches(pattern, p + 1, channel, i)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+                case '?' -> {
+                    if (c == channel.length()) {
+                        return false;
+                    }
+                    c++;
+                }
+                case '[' -> {
+                    if (c == channel.length()) {
+                        return false;
+                    }
+                    p++;
+                    val negate = p < pattern.length() && pattern.charAt(p) == '^';
+                    if (negate) {
+                        p++;
+                    }
+
+                    var match = false;
+                    val current = channel.charAt(c);
+                    while (p < pattern.length() && pattern.charAt(p) != ']') {
+                        if (pattern.charAt(p) == '\\' && p + 1 < pattern.length()) {
+                            p++;
+                            match |= pattern.charAt(p) == current;
+                        } else if (p + 2 < pattern.length() && pattern.charAt(p + 1) == '-') {
+                            val start = (char) Math.min(pattern.charAt(p), pattern.charAt(p + 2));
+                            val end = (char) Math.max(pattern.charAt(p), pattern.charAt(p + 2));
+                            match |= current >= start && current <= end;
+                            p += 2;
+                        } else {
+                            match |= pattern.charAt(p) == current;
+                        }
+                        p++;
+                    }
+                    if (p == pattern.length()) {
+                        p--; // Unterminated class, Redis treats the end of the pattern as its end.
+                    }
+                    if (match == negate) {
+                        return false;
+                    }
+                    c++;
+                }
+                case '\\' -> {
+                    if (p + 1 < pattern.length()) {
+                        p++;
+                    }
+                    if (c == channel.length() || pattern.charAt(p) != channel.charAt(c)) {
+                        return false;
+                    }
+                    c++;
+                }
+                default -> {
+                    if (c == channel.length() || pattern.charAt(p) != channel.charAt(c)) {
+                        return false;
+                    }
+                    c++;
+                }
+            }
+            p++;
+        }
+        return c == channel.length();
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.bridge;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.params.ClientKillParams;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@Tag("integration")
+class StripedJedisBridgeTest {
+    private static final URI REDIS = URI.create(System.getProperty("redis.url", "redis://localhost:6379"));
+
+    @Test
+    void spreadsThreadsOverAllConnections() throws InterruptedException {
+        try (final var bridge = new StripedJedisBridge(() -> new Jedis(REDIS), 4)) {
+            final var clients = this.clientIdsOfNewThreads(bridge, 8);
+
+            assertEquals(4, clients.size());
+            final var metrics = bridge.metrics();
+            assertEquals(4, metrics.connections());
+            assertEquals(8, metrics.borrows());
+            assertEquals(4, metrics.created());
+            assertEquals(0, metrics.discarded());
+            assertEquals(0, metrics.active());
+            assertEquals(0, metrics.waiters());
+        }
+    }
+
+    @Test
+    void reconnectsAfterConnectionLoss() {
+        try (final var bridge = new StripedJedisBridge(() -> new Jedis(REDIS), 1, Duration.ofMinutes(1))) {
+            final long first = bridge.bridge(jedis -> {
+                return jedis.clientId();
+            });
+            this.kill(first);
+
+            // The failed call discards its connection, the next one opens a new connection.
+            assertThrows(JedisConnectionException.class, () -> this.ping(bridge));
+            final long second = bridge.bridge(jedis -> {
+                return jedis.clientId();
+            });
+
+            assertEquals(2, bridge.metrics().created());
+            assertEquals(1, bridge.metrics().discarded());
+            assertEquals(1, bridge.metrics().connections());
+            assertNotEquals(first, second);
+        }
+    }
+
+    @Test
+    void healthCheckReplacesDeadIdleConnection() throws InterruptedException {
+        try (final var bridge = new StripedJedisBridge(() -> new Jedis(REDIS), 1, Duration.ofMillis(10))) {
+            final long first = bridge.bridge(jedis -> {
+                return jedis.clientId();
+            });
+            this.kill(first);
+            Thread.sleep(50);
+
+            // Idle longer than the interval, so the dead connection is found by a ping before the call.
+            assertEquals("PONG", this.ping(bridge));
+            assertEquals(2, bridge.metrics().created());
+            assertEquals(1, bridge.metrics().discarded());
+        }
+    }
+
+    @Test
+    void rejectsCallsOnceClosed() {
+        final var bridge = new StripedJedisBridge(() -> new Jedis(REDIS), 1);
+        this.ping(bridge);
+        bridge.close();
+
+        assertThrows(IllegalStateException.class, () -> this.ping(bridge));
+        assertEquals(0, bridge.metrics().connections());
+    }
+
+    private Set<Long> clientIdsOfNewThreads(final StripedJedisBridge bridge, final int threads) throws InterruptedException {
+        final var clients = new HashSet<Long>();
+        final var started = new ArrayList<Thread>();
+        for (int i = 0; i < threads; i++) {
+            final var thread = new Thread(() -> {
+                final long client = bridge.bridge(jedis -> {
+                    return jedis.clientId();
+                });
+                synchronized (clients) {
+                    clients.add(client);
+                }
+            });
+            thread.start();
+            started.add(thread);
+        }
+        for (final var thread : started) {
+            thread.join();
+        }
+        return clients;
+    }
+
+    private String ping(final StripedJedisBridge bridge) {
+        return bridge.bridge(jedis -> {
+            return jedis.ping();
+        });
+    }
+
+    private void kill(final long clientId) {
+        try (final var jedis = new Jedis(REDIS)) {
+            jedis.clientKill(ClientKillParams.clientKillParams().id(Long.toString(clientId)));
+        }
+    }
+}
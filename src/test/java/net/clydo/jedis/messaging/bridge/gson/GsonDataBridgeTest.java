@@ -0,0 +1,36 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.bridge.gson;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import net.clydo.jedis.messaging.bridge.DataBridge;
+import net.clydo.jedis.messaging.bridge.DataBridgeConformance;
+
+class GsonDataBridgeTest extends DataBridgeConformance<JsonElement> {
+    private final DataBridge<JsonElement> bridge = new GsonDataBridge(new Gson());
+
+    @Override
+    protected DataBridge<JsonElement> bridge() {
+        return this.bridge;
+    }
+}
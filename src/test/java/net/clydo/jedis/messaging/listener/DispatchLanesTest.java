@@ -0,0 +1,224 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.listener;
+
+import net.clydo.jedis.messaging.publisher.SaturationPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DispatchLanesTest {
+    private static final int CAPACITY = 2;
+
+    // Workers are only started by the test, so a lane stays full until then.
+    private final List<Runnable> workers = new ArrayList<>();
+    private final List<Integer> ran = new CopyOnWriteArrayList<>();
+
+    @Test
+    void runsEachPartitionInOrderOnOneLane() throws Exception {
+        final var executor = Executors.newCachedThreadPool();
+        final var sequences = new ConcurrentHashMap<Integer, List<Integer>>();
+        final var threads = new ConcurrentHashMap<Integer, Thread>();
+        final var mixed = new CopyOnWriteArrayList<Integer>();
+        final var partitions = 16;
+        final var perPartition = 500;
+        final var done = new CountDownLatch(partitions * perPartition);
+
+        try (final var lanes = new DispatchLanes(4, 64, SaturationPolicy.BLOCK, executor)) {
+            for (int i = 0; i < perPartition; i++) {
+                for (int partition = 0; partition < partitions; partition++) {
+                    final var key = ("key-" + partition).hashCode();
+                    final var index = i;
+                    lanes.dispatch(key, () -> {
+                        sequences.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(index);
+                        if (threads.computeIfAbsent(key, k -> Thread.currentThread()) != Thread.currentThread()) {
+                            mixed.add(key);
+                        }
+                        done.countDown();
+                    });
+                }
+            }
+
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        } finally {
+            shutdown(executor);
+        }
+
+        assertTrue(mixed.isEmpty(), "partitions ran on several lanes");
+        assertEquals(partitions, sequences.size());
+        for (final Map.Entry<Integer, List<Integer>> entry : sequences.entrySet()) {
+            final var sequence = entry.getValue();
+            for (int i = 0; i < perPartition; i++) {
+                assertEquals(i, sequence.get(i), "partition " + entry.getKey());
+            }
+        }
+        assertTrue(threads.values().stream().distinct().count() > 1, "partitions never ran in parallel");
+    }
+
+    @Test
+    void runsInlineWithoutLanes() {
+        try (final var lanes = new DispatchLanes(0, 1, SaturationPolicy.FAIL_FAST, this.workers::add)) {
+            final var caller = Thread.currentThread();
+            lanes.dispatch(1, () -> this.ran.add(Thread.currentThread() == caller ? 1 : -1));
+            assertEquals(List.of(1), this.ran);
+            assertTrue(this.workers.isEmpty());
+        }
+    }
+
+    @Test
+    void failFastDropsNewTasksWhenFull() throws Exception {
+        try (final var lanes = new DispatchLanes(1, CAPACITY, SaturationPolicy.FAIL_FAST, this.workers::add)) {
+            this.fill(lanes, 1, 2, 3);
+
+            this.startWorkers();
+
+            this.awaitRan(List.of(1, 2));
+        }
+    }
+
+    @Test
+    void dropOldestMakesRoomForNewTasks() throws Exception {
+        try (final var lanes = new DispatchLanes(1, CAPACITY, SaturationPolicy.DROP_OLDEST, this.workers::add)) {
+            this.fill(lanes, 1, 2, 3, 4);
+
+            this.startWorkers();
+
+            this.awaitRan(List.of(3, 4));
+        }
+    }
+
+    @Test
+    void blockWaitsForRoom() throws Exception {
+        final var executor = Executors.newSingleThreadExecutor();
+        try (final var lanes = new DispatchLanes(1, CAPACITY, SaturationPolicy.BLOCK, this.workers::add)) {
+            this.fill(lanes, 1, 2);
+            final var blocked = executor.submit(() -> this.fill(lanes, 3));
+
+            assertThrows(TimeoutException.class, () -> blocked.get(300, TimeUnit.MILLISECONDS));
+            this.startWorkers();
+            blocked.get(5, TimeUnit.SECONDS);
+
+            this.awaitRan(List.of(1, 2, 3));
+        } finally {
+            shutdown(executor);
+        }
+    }
+
+    @Test
+    void closeReleasesBlockedDispatchers() throws Exception {
+        final var executor = Executors.newFixedThreadPool(4);
+        try {
+            final var lanes = new DispatchLanes(1, CAPACITY, SaturationPolicy.BLOCK, this.workers::add);
+            this.fill(lanes, 1, 2);
+            final var blocked = new ArrayList<Future<?>>();
+            for (int i = 0; i < 4; i++) {
+                final var value = 3 + i;
+                blocked.add(executor.submit(() -> this.fill(lanes, value)));
+            }
+            assertThrows(TimeoutException.class, () -> blocked.get(0).get(300, TimeUnit.MILLISECONDS));
+
+            lanes.close();
+
+            for (final var dispatcher : blocked) {
+                dispatcher.get(5, TimeUnit.SECONDS);
+            }
+            this.startWorkers();
+            Thread.sleep(200);
+            assertTrue(this.ran.isEmpty());
+        } finally {
+            shutdown(executor);
+        }
+    }
+
+    @Test
+    void ignoresTasksAfterClose() throws Exception {
+        final var lanes = new DispatchLanes(1, CAPACITY, SaturationPolicy.BLOCK, this.workers::add);
+        this.startWorkers();
+        lanes.close();
+
+        this.fill(lanes, 1);
+
+        Thread.sleep(200);
+        assertTrue(this.ran.isEmpty());
+    }
+
+    @Test
+    void keepsRunningAfterTaskFailure() throws Exception {
+        try (final var lanes = new DispatchLanes(1, CAPACITY, SaturationPolicy.BLOCK, this.workers::add)) {
+            this.startWorkers();
+            lanes.dispatch(0, () -> {
+                throw new IllegalStateException("listener failed");
+            });
+            this.fill(lanes, 1);
+
+            this.awaitRan(List.of(1));
+        }
+    }
+
+    @Test
+    void rejectsInvalidSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new DispatchLanes(-1, 1, SaturationPolicy.BLOCK, this.workers::add));
+        assertThrows(IllegalArgumentException.class, () -> new DispatchLanes(1, 0, SaturationPolicy.BLOCK, this.workers::add));
+    }
+
+    private void fill(final DispatchLanes lanes, final int... values) {
+        for (final var value : values) {
+            lanes.dispatch(0, () -> this.ran.add(value));
+        }
+    }
+
+    private void awaitRan(final List<Integer> expected) throws InterruptedException {
+        final var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (this.ran.size() < expected.size() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        // Give dropped tasks the chance to show up if they were not dropped after all.
+        Thread.sleep(100);
+        assertEquals(expected, this.ran);
+    }
+
+    private void startWorkers() {
+        for (final var worker : this.workers) {
+            final var thread = new Thread(worker, "dispatch-lane");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private static void shutdown(final ExecutorService executor) throws InterruptedException {
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+}
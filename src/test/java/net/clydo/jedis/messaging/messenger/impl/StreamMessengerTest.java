@@ -0,0 +1,144 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.messenger.impl;
+
+import net.clydo.jedis.messaging.bridge.JedisBridge;
+import net.clydo.jedis.messaging.messenger.IJedisSubscription;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.StreamEntryID;
+import redis.clients.jedis.params.XReadGroupParams;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamMessengerTest {
+    private static final String GROUP = "billing";
+    private static final String CHANNEL = "orders";
+    private static final int BLOCK_MILLIS = 100;
+
+    private JedisPool pool;
+    private JedisBridge jedisBridge;
+    private String keyPrefix;
+
+    @BeforeEach
+    void connect() {
+        this.pool = new JedisPool(URI.create(System.getProperty("redis.url", "redis://localhost:6379")));
+        this.jedisBridge = JedisBridge.create(this.pool::getResource);
+        this.keyPrefix = "jedis-messaging-test:" + UUID.randomUUID() + ":";
+    }
+
+    @AfterEach
+    void disconnect() {
+        this.pool.close();
+    }
+
+    @Test
+    void acceptsDuplicateStreamChannels() {
+        final var messenger = StreamMessenger.builder(this.jedisBridge, GROUP)
+                .streamChannels(CHANNEL, CHANNEL)
+                .build();
+
+        assertTrue(messenger.isStreamChannel(CHANNEL));
+        assertFalse(messenger.isStreamChannel("other"));
+    }
+
+    @Test
+    @Tag("integration")
+    void replaysUnacknowledgedMessagesAfterRestart() throws InterruptedException {
+        final var received = new LinkedBlockingQueue<String>();
+
+        final var first = this.messenger("consumer-1");
+        final var subscription = this.subscribe(first, received);
+        first.publish(CHANNEL, "a");
+        assertEquals("a", received.poll(5, TimeUnit.SECONDS));
+        subscription.close();
+        first.close();
+        // The reader only notices the close once its blocking read returns.
+        Thread.sleep(BLOCK_MILLIS * 5);
+
+        final var publisher = this.messenger("publisher");
+        publisher.publish(CHANNEL, "b");
+        publisher.publish(CHANNEL, "c");
+        try (final var jedis = this.pool.getResource()) {
+            // The first instance died after reading b, but before acknowledging it.
+            final var read = jedis.xreadGroup(GROUP, "consumer-1", XReadGroupParams.xReadGroupParams().count(1), Map.of(this.keyPrefix + CHANNEL, StreamEntryID.XREADGROUP_UNDELIVERED_ENTRY));
+            assertEquals(1, read.get(0).getValue().size());
+        }
+
+        final var second = this.messenger("consumer-1");
+        final var restarted = this.subscribe(second, received);
+        assertEquals("b", received.poll(5, TimeUnit.SECONDS));
+        assertEquals("c", received.poll(5, TimeUnit.SECONDS));
+        assertNull(received.poll(BLOCK_MILLIS * 3, TimeUnit.MILLISECONDS));
+
+        try (final var jedis = this.pool.getResource()) {
+            final var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (jedis.xpending(this.keyPrefix + CHANNEL, GROUP).getTotal() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(BLOCK_MILLIS);
+            }
+            assertEquals(0, jedis.xpending(this.keyPrefix + CHANNEL, GROUP).getTotal());
+        }
+        restarted.close();
+        second.close();
+        publisher.close();
+
+        try (final var jedis = this.pool.getResource()) {
+            jedis.del(this.keyPrefix + CHANNEL);
+        }
+    }
+
+    private StreamMessenger messenger(final String consumer) {
+        return StreamMessenger.builder(this.jedisBridge, GROUP)
+                .consumer(consumer)
+                .streamChannels(CHANNEL)
+                .keyPrefix(this.keyPrefix)
+                .blockMillis(BLOCK_MILLIS)
+                .build();
+    }
+
+    private IJedisSubscription subscribe(final StreamMessenger messenger, final BlockingQueue<String> received) throws InterruptedException {
+        final var subscription = messenger.multiplex((pattern, channel, message) -> received.add(new String(message, StandardCharsets.UTF_8)));
+        subscription.addChannels(CHANNEL);
+
+        // Messages published before the group exists are not read by it, the group creates the stream.
+        try (final var jedis = this.pool.getResource()) {
+            final var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!jedis.exists(this.keyPrefix + CHANNEL) && System.nanoTime() < deadline) {
+                Thread.sleep(BLOCK_MILLIS);
+            }
+        }
+        return subscription;
+    }
+}
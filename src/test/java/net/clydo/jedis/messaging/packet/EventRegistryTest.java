@@ -0,0 +1,213 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.packet;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+import net.clydo.jedis.messaging.bridge.JedisBridge;
+import net.clydo.jedis.messaging.bridge.gson.GsonDataBridge;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Tag("integration")
+class EventRegistryTest {
+    private JedisPool pool;
+    private String namespace;
+    private AtomicInteger redisCalls;
+    private JedisBridge jedisBridge;
+
+    @BeforeEach
+    void connect() {
+        this.pool = new JedisPool(URI.create(System.getProperty("redis.url", "redis://localhost:6379")));
+        this.namespace = "jedis-messaging-test:" + UUID.randomUUID();
+        this.redisCalls = new AtomicInteger();
+        final var delegate = JedisBridge.create(this.pool::getResource);
+        this.jedisBridge = new JedisBridge() {
+            @Override
+            public <T> T bridge(final Function<Jedis, T> function) {
+                EventRegistryTest.this.redisCalls.incrementAndGet();
+                return delegate.bridge(function);
+            }
+        };
+    }
+
+    @AfterEach
+    void disconnect() {
+        try (final var jedis = this.pool.getResource()) {
+            jedis.del("{" + this.namespace + "}:names", "{" + this.namespace + "}:ids", "{" + this.namespace + "}:sequence");
+        }
+        this.pool.close();
+    }
+
+    @Test
+    void internsIdsSharedByAllInstances() {
+        final var first = this.registry(EventRegistry.DEFAULT_MAX_EVENTS);
+        final var second = this.registry(EventRegistry.DEFAULT_MAX_EVENTS);
+
+        assertEquals(1, first.intern("player:join"));
+        assertEquals(2, first.intern("player:quit"));
+        assertEquals(2, second.intern("player:quit"));
+        assertEquals(3, second.intern("player:chat"));
+        assertEquals(3, first.intern("player:chat"));
+        assertEquals("player:join", second.name(1));
+        assertEquals("player:chat", first.name(3));
+
+        try (final var jedis = this.pool.getResource()) {
+            assertEquals(Map.of("player:join", "1", "player:quit", "2", "player:chat", "3"), jedis.hgetAll("{" + this.namespace + "}:names"));
+            assertEquals(Map.of("1", "player:join", "2", "player:quit", "3", "player:chat"), jedis.hgetAll("{" + this.namespace + "}:ids"));
+        }
+    }
+
+    @Test
+    void cachesInternedIds() {
+        final var registry = this.registry(EventRegistry.DEFAULT_MAX_EVENTS);
+        final var id = registry.intern("player:join");
+        final var calls = this.redisCalls.get();
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(id, registry.intern("player:join"));
+            assertEquals("player:join", registry.name(id));
+        }
+
+        assertEquals(calls, this.redisCalls.get());
+    }
+
+    @Test
+    void assignsEveryNameOneIdUnderContention() throws Exception {
+        final var executor = Executors.newFixedThreadPool(8);
+        try {
+            final var assigned = new ConcurrentHashMap<String, Integer>();
+            final var futures = new ArrayList<Future<?>>();
+            for (int thread = 0; thread < 8; thread++) {
+                // A registry per thread, like separate instances racing for the same names.
+                final var registry = this.registry(EventRegistry.DEFAULT_MAX_EVENTS);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 50; i++) {
+                        final var event = "event-" + i;
+                        final var id = registry.intern(event);
+                        final var previous = assigned.putIfAbsent(event, id);
+                        assertTrue(previous == null || previous == id, event + " got " + previous + " and " + id);
+                    }
+                }));
+            }
+            for (final var future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+
+            assertEquals(50, assigned.size());
+            assertEquals(50, new HashSet<>(assigned.values()).size());
+            assertTrue(assigned.values().stream().allMatch(id -> id >= 1 && id <= 50));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void fallsBackToNamesOnceAllIdsAreTaken() {
+        final var first = this.registry(2);
+        final var second = this.registry(2);
+
+        assertEquals(1, first.intern("player:join"));
+        assertEquals(2, second.intern("player:quit"));
+        assertEquals(EventRegistry.NO_ID, first.intern("player:chat"));
+
+        // Running out loaded the ids of the other instance, nothing is looked up from now on.
+        final var calls = this.redisCalls.get();
+        assertEquals(2, first.intern("player:quit"));
+        assertEquals(EventRegistry.NO_ID, first.intern("player:kick"));
+        assertEquals(calls, this.redisCalls.get());
+
+        final var bridge = new GsonDataBridge(new Gson());
+        final var codec = new PacketCodec<>(bridge, true, new PacketCompressor(Integer.MAX_VALUE, null, Deflater.DEFAULT_COMPRESSION), first);
+        final var interned = new Packet<JsonElement>(null, PacketType.EVENT, "player:join", new JsonPrimitive(1), Packet.NO_CALLBACK, false);
+        final var named = new Packet<JsonElement>(null, PacketType.EVENT, "player:chat", new JsonPrimitive(2), Packet.NO_CALLBACK, false);
+
+        final var internedBytes = codec.encode(interned);
+        final var namedBytes = codec.encode(named);
+
+        assertEquals(PacketCodec.FLAG_EVENT_ID, internedBytes[2]);
+        assertEquals(PacketCodec.FLAG_EVENT, namedBytes[2]);
+        assertEquals(interned, codec.decode(internedBytes));
+        assertEquals(named, codec.decode(namedBytes));
+        assertEquals(named, new PacketCodec<>(bridge, true).decode(namedBytes));
+    }
+
+    @Test
+    void remembersMissingIds() throws InterruptedException {
+        final var reader = this.registry(EventRegistry.DEFAULT_MAX_EVENTS);
+        final var writer = this.registry(EventRegistry.DEFAULT_MAX_EVENTS);
+
+        assertNull(reader.name(1));
+        final var calls = this.redisCalls.get();
+        assertEquals(1, writer.intern("player:join"));
+        final var afterIntern = this.redisCalls.get();
+
+        // Still remembered as missing, so not looked up again right away.
+        assertNull(reader.name(1));
+        assertEquals(afterIntern, this.redisCalls.get());
+        assertEquals(calls + 1, afterIntern);
+
+        Thread.sleep(1_100);
+        assertEquals("player:join", reader.name(1));
+        assertEquals(afterIntern + 1, this.redisCalls.get());
+    }
+
+    @Test
+    void boundsTheMissCache() {
+        final var registry = this.registry(4);
+        for (int id = 100; id < 110; id++) {
+            assertNull(registry.name(id));
+        }
+        final var calls = this.redisCalls.get();
+
+        // Only the latest misses are kept, the first ones were dropped along the way.
+        assertNull(registry.name(109));
+        assertEquals(calls, this.redisCalls.get());
+        assertNull(registry.name(100));
+        assertEquals(calls + 1, this.redisCalls.get());
+    }
+
+    private EventRegistry registry(final int maxEvents) {
+        return new EventRegistry(this.jedisBridge, this.namespace, maxEvents);
+    }
+}
@@ -0,0 +1,378 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.packet;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import net.clydo.jedis.messaging.bridge.DataBridge;
+import net.clydo.jedis.messaging.bridge.JedisBridge;
+import net.clydo.jedis.messaging.bridge.gson.GsonDataBridge;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PacketCodecTest {
+    private static final String SIGNATURE = "0f8fad5b-d9cb-469f-a165-70867728950e";
+    private static final String EVENT = "player:join";
+    private static final int EVENT_ID = 42;
+
+    private final DataBridge<JsonElement> bridge = new GsonDataBridge(new Gson());
+
+    @Test
+    void roundTripsEveryFlagCombination() {
+        final var codec = new PacketCodec<>(this.bridge, true);
+        final var internedCodec = new PacketCodec<>(this.bridge, true, new PacketCompressor(Integer.MAX_VALUE, null, Deflater.DEFAULT_COMPRESSION), new StubEventRegistry());
+
+        for (int flags = 0; flags < 32; flags++) {
+            if ((flags & PacketCodec.FLAG_EVENT) != 0 && (flags & PacketCodec.FLAG_EVENT_ID) != 0) {
+                // The encoder writes either the name or the id, see readsNameOverIdWhenBothArePresent.
+                continue;
+            }
+            final var packet = packet(flags);
+            final var interned = (flags & PacketCodec.FLAG_EVENT_ID) != 0;
+            final var encoded = (interned ? internedCodec : codec).encode(packet);
+
+            assertTrue(PacketCodec.isBinary(encoded));
+            assertEquals(flags, encoded[2], "flags of " + packet);
+            assertEquals(packet, internedCodec.decode(encoded));
+
+            final var lazy = internedCodec.decodeLazy(encoded);
+            assertEquals(packet.signature(), lazy.signature());
+            assertEquals(packet.type(), lazy.type());
+            assertEquals(interned ? EVENT_ID : EventRegistry.NO_ID, lazy.eventId());
+            assertEquals(packet.event(), lazy.event());
+            assertEquals(packet.callbackId(), lazy.callbackId());
+            assertEquals(packet.skipSelf(), lazy.skipSelf());
+            assertEquals(packet.data(), lazy.data());
+        }
+    }
+
+    @Test
+    void roundTripsLargeVarints() {
+        final var codec = new PacketCodec<>(this.bridge, true);
+        for (final var callbackId : new long[]{1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE}) {
+            final var packet = new Packet<>(null, PacketType.CALLBACK, "reply", data(), callbackId, false);
+            assertEquals(packet, codec.decode(codec.encode(packet)));
+        }
+    }
+
+    @Test
+    void roundTripsNonAsciiEventNames() {
+        final var codec = new PacketCodec<>(this.bridge, true);
+        final var packet = new Packet<>(SIGNATURE, PacketType.EVENT, "caf\u00e9:\u65e5\u672c:\ud83d\ude00", data(), Packet.NO_CALLBACK, false);
+        assertEquals(packet, codec.decode(codec.encode(packet)));
+    }
+
+    @Test
+    void keepsCallbackNamesOutOfTheRegistry() {
+        final var codec = new PacketCodec<>(this.bridge, true, new PacketCompressor(Integer.MAX_VALUE, null, Deflater.DEFAULT_COMPRESSION), new StubEventRegistry());
+        final var packet = new Packet<>(SIGNATURE, PacketType.CALLBACK, EVENT, data(), 7, false);
+
+        final var encoded = codec.encode(packet);
+
+        assertEquals(PacketCodec.FLAG_SIGNATURE | PacketCodec.FLAG_CALLBACK | PacketCodec.FLAG_EVENT, encoded[2]);
+        assertEquals(packet, codec.decode(encoded));
+    }
+
+    @Test
+    void readsNameOverIdWhenBothArePresent() {
+        final var frame = frame(PacketCodec.FLAG_EVENT | PacketCodec.FLAG_EVENT_ID);
+        writeVarLong(frame, 4);
+        frame.writeBytes("name".getBytes(StandardCharsets.UTF_8));
+        writeVarLong(frame, EVENT_ID);
+        frame.writeBytes(this.bridge.encodeDataBytes(data()));
+
+        final var packet = new PacketCodec<>(this.bridge, true, new PacketCompressor(Integer.MAX_VALUE, null, Deflater.DEFAULT_COMPRESSION), new StubEventRegistry()).decodeLazy(frame.toByteArray());
+
+        assertEquals("name", packet.event());
+        assertEquals(EVENT_ID, packet.eventId());
+        assertEquals(data(), packet.data());
+    }
+
+    @Test
+    void roundTripsJsonForEveryFlagCombination() {
+        final var codec = new PacketCodec<>(this.bridge, false);
+        for (int flags = 0; flags < 32; flags++) {
+            if ((flags & PacketCodec.FLAG_EVENT_ID) != 0) {
+                // JSON always carries the name.
+                continue;
+            }
+            final var packet = packet(flags);
+            final var encoded = codec.encode(packet);
+
+            assertFalse(PacketCodec.isBinary(encoded));
+            assertEquals(packet, codec.decode(encoded));
+            assertEquals(packet, codec.decodeLazy(encoded).toPacket());
+        }
+    }
+
+    @Test
+    void decodesBothFormatsRegardlessOfTheEncodedOne() {
+        final var binary = new PacketCodec<>(this.bridge, true);
+        final var json = new PacketCodec<>(this.bridge, false);
+        final var packet = new Packet<>(SIGNATURE, PacketType.EVENT, EVENT, data(), 9, true);
+
+        assertEquals(packet, json.decode(binary.encode(packet)));
+        assertEquals(packet, json.decodeLazy(binary.encode(packet)).toPacket());
+        assertEquals(packet, binary.decode(json.encode(packet)));
+        assertEquals(packet, binary.decodeLazy(json.encode(packet)).toPacket());
+    }
+
+    @Test
+    void detectsBinaryFramesByTheirFirstByte() {
+        assertFalse(PacketCodec.isBinary(new byte[0]));
+        assertFalse(PacketCodec.isBinary("{}".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(PacketCodec.isBinary(" {}".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(PacketCodec.isBinary(new byte[]{PacketCodec.BINARY_VERSION}));
+    }
+
+    @Test
+    void rejectsTruncatedHeader() {
+        final var codec = new PacketCodec<>(this.bridge, true);
+        assertRejected(codec, new byte[]{PacketCodec.BINARY_VERSION});
+        assertRejected(codec, new byte[]{PacketCodec.BINARY_VERSION, 0});
+    }
+
+    @Test
+    void rejectsTruncatedSignature() {
+        final var frame = frame(PacketCodec.FLAG_SIGNATURE);
+        frame.writeBytes(new byte[15]);
+
+        assertRejected(new PacketCodec<>(this.bridge, true), frame.toByteArray());
+    }
+
+    @Test
+    void rejectsTruncatedVarint() {
+        final var frame = frame(PacketCodec.FLAG_CALLBACK);
+        frame.write(0x80);
+        frame.write(0x80);
+
+        assertRejected(new PacketCodec<>(this.bridge, true), frame.toByteArray());
+    }
+
+    @Test
+    void rejectsOverlongVarint() {
+        final var frame = frame(PacketCodec.FLAG_CALLBACK);
+        for (int i = 0; i < 11; i++) {
+            frame.write(0xFF);
+        }
+        frame.write(0);
+
+        assertRejected(new PacketCodec<>(this.bridge, true), frame.toByteArray());
+    }
+
+    @Test
+    void rejectsOversizedEventLength() {
+        final var frame = frame(PacketCodec.FLAG_EVENT);
+        writeVarLong(frame, 100);
+        frame.writeBytes("short".getBytes(StandardCharsets.UTF_8));
+
+        assertRejected(new PacketCodec<>(this.bridge, true), frame.toByteArray());
+    }
+
+    @Test
+    void rejectsNegativeEventLength() {
+        final var frame = frame(PacketCodec.FLAG_EVENT);
+        writeVarLong(frame, -1);
+        frame.writeBytes("short".getBytes(StandardCharsets.UTF_8));
+
+        assertRejected(new PacketCodec<>(this.bridge, true), frame.toByteArray());
+    }
+
+    @Test
+    void rejectsEventIdsOutsideTheIntRange() {
+        final var codec = new PacketCodec<>(this.bridge, true);
+        for (final var id : new long[]{EventRegistry.NO_ID, Integer.MAX_VALUE + 1L, -1}) {
+            final var frame = frame(PacketCodec.FLAG_EVENT_ID);
+            writeVarLong(frame, id);
+            assertRejected(codec, frame.toByteArray());
+        }
+    }
+
+    @Test
+    void rejectsEveryTruncationOfTheEnvelope() {
+        final var codec = new PacketCodec<>(this.bridge, true);
+        final var packet = new Packet<>(SIGNATURE, PacketType.EVENT, EVENT, data(), 300, true);
+        final var encoded = codec.encode(packet);
+        final var envelope = encoded.length - this.bridge.encodeDataBytes(packet.data()).length;
+
+        for (int length = 1; length < envelope; length++) {
+            assertRejected(codec, Arrays.copyOf(encoded, length));
+        }
+        assertEquals(packet.event(), codec.decodeLazy(Arrays.copyOf(encoded, envelope)).event());
+    }
+
+    @Test
+    void readsEscapedNamesFromJsonEnvelope() {
+        // Gson escapes HTML characters by default, so the event name takes the unescaping path.
+        final var packet = new Packet<>(SIGNATURE, PacketType.CALLBACK, "<reply=\"a\\b\">\n\u00e9", data(), 5, false);
+        final var json = this.bridge.encodePacketBytes(packet);
+        assertTrue(new String(json, StandardCharsets.UTF_8).contains("\\u003c"));
+
+        final var lazy = PacketCodec.readJsonEnvelope(this.bridge, json);
+
+        assertNotNull(lazy);
+        assertEquals(packet, lazy.toPacket());
+    }
+
+    @Test
+    void readsNullMembersFromJsonEnvelope() {
+        final var lazy = PacketCodec.readJsonEnvelope(this.bridge, json("{\"signature\":null,\"type\":0,\"event\":null,\"data\":null}"));
+
+        assertNotNull(lazy);
+        assertNull(lazy.signature());
+        assertNull(lazy.event());
+        assertNull(lazy.data());
+        assertEquals(Packet.NO_CALLBACK, lazy.callbackId());
+        assertFalse(lazy.skipSelf());
+    }
+
+    @Test
+    void readsReorderedAndUnknownMembersFromJsonEnvelope() {
+        final var lazy = PacketCodec.readJsonEnvelope(this.bridge, json("""
+                {"extra":{"type":5,"event":"nested"},"data":{"name":"Steve","level":12},"skipSelf":true,
+                 "list":[1,"two",{"three":[]}],"callbackId":9,"event":"player:join","unknown":null,
+                 "type":0,"signature":"%s","number":-1.5e3,"flag":false}""".formatted(SIGNATURE)));
+
+        assertNotNull(lazy);
+        assertEquals(new Packet<>(SIGNATURE, PacketType.EVENT, EVENT, data(), 9, true), lazy.toPacket());
+    }
+
+    @Test
+    void skipsNestedPayloadInJsonEnvelope() {
+        final var payload = "{\"a\":[{\"event\":\"x\"},\"}\\\"]\"],\"b\":{\"type\":3}}";
+        final var lazy = PacketCodec.readJsonEnvelope(this.bridge, json("{\"data\":" + payload + ",\"type\":1,\"event\":\"after\"}"));
+
+        assertNotNull(lazy);
+        assertEquals(1, lazy.type());
+        assertEquals("after", lazy.event());
+        assertEquals(JsonParser.parseString(payload), lazy.data());
+    }
+
+    @Test
+    void fallsBackToTheBridgeForOtherJsonLayouts() {
+        final var renamed = new GsonDataBridge(new GsonBuilder().setFieldNamingPolicy(FieldNamingPolicy.UPPER_CAMEL_CASE).create());
+        final var packet = new Packet<>(SIGNATURE, PacketType.EVENT, EVENT, data(), 3, true);
+        final var json = renamed.encodePacketBytes(packet);
+
+        assertNull(PacketCodec.readJsonEnvelope(renamed, json));
+        assertEquals(packet, new PacketCodec<>(renamed, false).decodeLazy(json).toPacket());
+    }
+
+    @Test
+    void fallsBackToTheBridgeForMembersOfAnotherType() {
+        // Gson reads the quoted type leniently, the scanner does not.
+        final var json = json("{\"type\":\"0\",\"event\":\"player:join\",\"data\":{\"name\":\"Steve\",\"level\":12}}");
+
+        assertNull(PacketCodec.readJsonEnvelope(this.bridge, json));
+        assertEquals(new Packet<>(null, PacketType.EVENT, EVENT, data(), Packet.NO_CALLBACK, false), new PacketCodec<>(this.bridge, false).decodeLazy(json).toPacket());
+    }
+
+    private static void assertRejected(final PacketCodec<JsonElement> codec, final byte[] message) {
+        assertThrows(IllegalArgumentException.class, () -> codec.decodeLazy(message), () -> "decoding " + Arrays.toString(message));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode(message), () -> "decoding " + Arrays.toString(message));
+    }
+
+    private static Packet<JsonElement> packet(final int flags) {
+        final var hasEvent = (flags & (PacketCodec.FLAG_EVENT | PacketCodec.FLAG_EVENT_ID)) != 0;
+        return new Packet<>(
+                (flags & PacketCodec.FLAG_SIGNATURE) != 0 ? SIGNATURE : null,
+                PacketType.EVENT,
+                hasEvent ? EVENT : null,
+                data(),
+                (flags & PacketCodec.FLAG_CALLBACK) != 0 ? 1_234_567 : Packet.NO_CALLBACK,
+                (flags & PacketCodec.FLAG_SKIP_SELF) != 0
+        );
+    }
+
+    private static byte[] json(final String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static JsonElement data() {
+        final var data = new JsonObject();
+        data.addProperty("name", "Steve");
+        data.addProperty("level", 12);
+        return data;
+    }
+
+    private static ByteArrayOutputStream frame(final int flags) {
+        final var frame = new ByteArrayOutputStream();
+        frame.write(PacketCodec.BINARY_VERSION);
+        frame.write(PacketType.EVENT.getId());
+        frame.write(flags);
+        return frame;
+    }
+
+    private static void writeVarLong(final ByteArrayOutputStream out, final long value) {
+        final var bytes = new byte[10];
+        out.write(bytes, 0, PacketCodec.writeVarLong(bytes, 0, value));
+    }
+
+    /**
+     * Interns {@link #EVENT} without Redis.
+     */
+    private static final class StubEventRegistry extends EventRegistry {
+        private static final Map<String, Integer> IDS = Map.of(EVENT, EVENT_ID);
+
+        StubEventRegistry() {
+            super(new JedisBridge() {
+                @Override
+                public <T> T bridge(final Function<Jedis, T> function) {
+                    throw new AssertionError("Redis is not available in this test");
+                }
+            });
+        }
+
+        @Override
+        public int intern(final @NotNull String event) {
+            return IDS.getOrDefault(event, NO_ID);
+        }
+
+        @Override
+        public @Nullable String name(final int id) {
+            return IDS.entrySet().stream()
+                    .filter(entry -> entry.getValue() == id)
+                    .map(Map.Entry::getKey)
+                    .findFirst()
+                    .orElse(null);
+        }
+    }
+}
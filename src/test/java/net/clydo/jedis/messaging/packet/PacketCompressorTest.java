@@ -0,0 +1,208 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.packet;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PacketCompressorTest {
+    private static final byte[] DICTIONARY = "{\"signature\":\"\",\"type\":0,\"event\":\"player:\",\"data\":{\"name\":\"".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void compressesFromTheThresholdOn() {
+        final var compressor = new PacketCompressor(256, null, Deflater.DEFAULT_COMPRESSION);
+        final var below = compressible(255);
+        final var at = compressible(256);
+
+        assertSame(below, compressor.compress(below));
+
+        final var compressed = compressor.compress(at);
+        assertTrue(PacketCompressor.isCompressed(compressed));
+        assertTrue(compressed.length < at.length);
+        assertArrayEquals(at, compressor.decompress(compressed));
+    }
+
+    @Test
+    void keepsFramesThatDoNotShrink() {
+        final var compressor = new PacketCompressor(0, null, Deflater.DEFAULT_COMPRESSION);
+        final var random = new byte[1024];
+        new Random(1).nextBytes(random);
+
+        assertSame(random, compressor.compress(random));
+        for (final var tiny : new byte[][]{new byte[0], new byte[]{1}, new byte[]{1, 2}}) {
+            assertSame(tiny, compressor.compress(tiny));
+        }
+    }
+
+    @Test
+    void roundTripsWithDictionary() {
+        final var compressor = new PacketCompressor(0, DICTIONARY, Deflater.BEST_COMPRESSION);
+        final var frame = compressible(512);
+
+        final var compressed = compressor.compress(frame);
+
+        assertTrue(compressed.length < new PacketCompressor(0, null, Deflater.BEST_COMPRESSION).compress(frame).length);
+        assertArrayEquals(frame, compressor.decompress(compressed));
+    }
+
+    @Test
+    void rejectsDictionaryMismatch() {
+        final var compressed = new PacketCompressor(0, DICTIONARY, Deflater.DEFAULT_COMPRESSION).compress(compressible(512));
+
+        final var missing = assertThrows(IllegalArgumentException.class, () -> new PacketCompressor(0, null, Deflater.DEFAULT_COMPRESSION).decompress(compressed));
+        assertTrue(missing.getMessage().contains("needs a preset dictionary"), missing.getMessage());
+
+        final var other = "something else entirely".getBytes(StandardCharsets.UTF_8);
+        final var different = assertThrows(IllegalArgumentException.class, () -> new PacketCompressor(0, other, Deflater.DEFAULT_COMPRESSION).decompress(compressed));
+        assertTrue(different.getMessage().contains("different preset dictionary"), different.getMessage());
+    }
+
+    @Test
+    void readsFramesWithoutDictionaryWhenHavingOne() {
+        final var frame = compressible(512);
+        final var compressed = new PacketCompressor(0, null, Deflater.DEFAULT_COMPRESSION).compress(frame);
+
+        assertArrayEquals(frame, new PacketCompressor(0, DICTIONARY, Deflater.DEFAULT_COMPRESSION).decompress(compressed));
+    }
+
+    @Test
+    void rejectsFramesAboveTheLimitBeforeInflating() {
+        final var frame = compressible(64 * 1024);
+        final var compressed = new PacketCompressor(0, null, Deflater.DEFAULT_COMPRESSION).compress(frame);
+
+        final var limited = new PacketCompressor(0, null, Deflater.DEFAULT_COMPRESSION, frame.length - 1);
+        final var exception = assertThrows(IllegalArgumentException.class, () -> limited.decompress(compressed));
+        assertTrue(exception.getMessage().contains("exceeds the limit"), exception.getMessage());
+
+        assertArrayEquals(frame, new PacketCompressor(0, null, Deflater.DEFAULT_COMPRESSION, frame.length).decompress(compressed));
+    }
+
+    @Test
+    void rejectsHugeDeclaredLengthsWithoutAllocating() {
+        final var unlimited = new PacketCompressor(0, null, Deflater.DEFAULT_COMPRESSION, Integer.MAX_VALUE);
+        final var frame = header(Integer.MAX_VALUE);
+        frame.writeBytes(new byte[]{0x78, (byte) 0x9C, 0x03, 0x00});
+
+        // Allocating the declared length would take gigabytes, the checks must come first.
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            assertThrows(IllegalArgumentException.class, () -> unlimited.decompress(frame.toByteArray()));
+        });
+
+        final var negative = header(-1);
+        negative.writeBytes(new byte[]{0x78, (byte) 0x9C, 0x03, 0x00});
+        assertThrows(IllegalArgumentException.class, () -> unlimited.decompress(negative.toByteArray()));
+    }
+
+    @Test
+    void rejectsTruncatedStreams() {
+        final var compressor = new PacketCompressor(0, null, Deflater.DEFAULT_COMPRESSION);
+        final var compressed = compressor.compress(compressible(4096));
+
+        for (int length = 1; length < compressed.length; length++) {
+            final var truncated = Arrays.copyOf(compressed, length);
+            assertThrows(IllegalArgumentException.class, () -> compressor.decompress(truncated), "length " + length);
+        }
+    }
+
+    @Test
+    void rejectsCorruptStreams() {
+        final var compressor = new PacketCompressor(0, null, Deflater.DEFAULT_COMPRESSION);
+        final var frame = compressible(4096);
+        final var compressed = compressor.compress(frame);
+        final var offset = 1 + PacketCodec.varLongSize(frame.length);
+
+        // The zlib header and the adler32 trailer catch any single flipped byte of the stream.
+        for (int i = offset; i < compressed.length; i++) {
+            final var corrupt = compressed.clone();
+            corrupt[i] ^= 0x5A;
+            assertThrows(IllegalArgumentException.class, () -> compressor.decompress(corrupt), "byte " + i);
+        }
+    }
+
+    @Test
+    void rejectsLengthMismatches() {
+        final var compressor = new PacketCompressor(0, null, Deflater.DEFAULT_COMPRESSION);
+        final var frame = compressible(4096);
+        final var compressed = compressor.compress(frame);
+        final var offset = 1 + PacketCodec.varLongSize(frame.length);
+        final var stream = Arrays.copyOfRange(compressed, offset, compressed.length);
+
+        for (final var declared : new int[]{frame.length - 1, frame.length + 1, 1}) {
+            final var mismatched = header(declared);
+            mismatched.writeBytes(stream);
+            assertThrows(IllegalArgumentException.class, () -> compressor.decompress(mismatched.toByteArray()), "declared " + declared);
+        }
+    }
+
+    @Test
+    void rejectsTruncatedLength() {
+        final var compressor = new PacketCompressor(0, null, Deflater.DEFAULT_COMPRESSION);
+        assertThrows(IllegalArgumentException.class, () -> compressor.decompress(new byte[]{PacketCompressor.COMPRESSED}));
+        assertThrows(IllegalArgumentException.class, () -> compressor.decompress(new byte[]{PacketCompressor.COMPRESSED, (byte) 0x80}));
+    }
+
+    @Test
+    void keepsWorkingAfterClose() {
+        final var compressor = new PacketCompressor(0, DICTIONARY, Deflater.DEFAULT_COMPRESSION);
+        final var frame = compressible(1024);
+        compressor.close();
+
+        assertArrayEquals(frame, compressor.decompress(compressor.compress(frame)));
+    }
+
+    @Test
+    void detectsCompressedFrames() {
+        assertFalse(PacketCompressor.isCompressed(new byte[0]));
+        assertFalse(PacketCompressor.isCompressed(new byte[]{PacketCodec.BINARY_VERSION}));
+        assertFalse(PacketCompressor.isCompressed("{}".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(PacketCompressor.COMPRESSED, new PacketCompressor(0, null, Deflater.DEFAULT_COMPRESSION).compress(compressible(100))[0]);
+    }
+
+    private static byte[] compressible(final int length) {
+        final var text = new StringBuilder();
+        for (int i = 0; text.length() < length; i++) {
+            text.append("{\"signature\":\"\",\"type\":0,\"event\":\"player:join\",\"data\":{\"name\":\"Steve").append(i).append("\"}}");
+        }
+        return text.substring(0, length).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static ByteArrayOutputStream header(final long length) {
+        final var header = new ByteArrayOutputStream();
+        header.write(PacketCompressor.COMPRESSED);
+        final var varint = new byte[10];
+        header.write(varint, 0, PacketCodec.writeVarLong(varint, 0, length));
+        return header;
+    }
+}
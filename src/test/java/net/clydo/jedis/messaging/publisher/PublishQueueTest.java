@@ -0,0 +1,184 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.publisher;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PublishQueueTest {
+    private static final int CAPACITY = 2;
+
+    // Workers are only started by the test, so the queue stays full until then.
+    private final List<Runnable> workers = new ArrayList<>();
+    private final List<Long> published = new CopyOnWriteArrayList<>();
+
+    @Test
+    void failFastRejectsWhenFull() throws Exception {
+        try (final var queue = new PublishQueue(CAPACITY, 1, SaturationPolicy.FAIL_FAST, this.workers::add)) {
+            final var first = queue.submit(this.publish(1));
+            final var second = queue.submit(this.publish(2));
+
+            final var rejected = queue.submit(this.publish(3));
+
+            assertRejected(rejected, "full");
+            this.startWorkers();
+            assertEquals(1L, first.get(5, TimeUnit.SECONDS));
+            assertEquals(2L, second.get(5, TimeUnit.SECONDS));
+            assertEquals(List.of(1L, 2L), this.published);
+        }
+    }
+
+    @Test
+    void dropOldestMakesRoomForNewPublishes() throws Exception {
+        try (final var queue = new PublishQueue(CAPACITY, 1, SaturationPolicy.DROP_OLDEST, this.workers::add)) {
+            final var first = queue.submit(this.publish(1));
+            final var second = queue.submit(this.publish(2));
+            final var third = queue.submit(this.publish(3));
+            final var fourth = queue.submit(this.publish(4));
+
+            assertRejected(first, "Dropped");
+            assertRejected(second, "Dropped");
+            this.startWorkers();
+            assertEquals(3L, third.get(5, TimeUnit.SECONDS));
+            assertEquals(4L, fourth.get(5, TimeUnit.SECONDS));
+            assertEquals(List.of(3L, 4L), this.published);
+        }
+    }
+
+    @Test
+    void blockWaitsForRoom() throws Exception {
+        try (final var queue = new PublishQueue(CAPACITY, 1, SaturationPolicy.BLOCK, this.workers::add)) {
+            queue.submit(this.publish(1));
+            queue.submit(this.publish(2));
+
+            final var blocked = CompletableFuture.supplyAsync(() -> queue.submit(this.publish(3)));
+
+            assertThrows(TimeoutException.class, () -> blocked.get(300, TimeUnit.MILLISECONDS));
+            this.startWorkers();
+            assertEquals(3L, blocked.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS));
+            assertEquals(List.of(1L, 2L, 3L), this.published);
+        }
+    }
+
+    @Test
+    void closeReleasesBlockedSubmitters() throws Exception {
+        final var queue = new PublishQueue(CAPACITY, 1, SaturationPolicy.BLOCK, this.workers::add);
+        queue.submit(this.publish(1));
+        queue.submit(this.publish(2));
+        final var blocked = CompletableFuture.supplyAsync(() -> queue.submit(this.publish(3)));
+        assertThrows(TimeoutException.class, () -> blocked.get(300, TimeUnit.MILLISECONDS));
+
+        queue.close();
+
+        assertRejected(blocked.get(5, TimeUnit.SECONDS), "closed");
+        assertTrue(this.published.isEmpty());
+    }
+
+    @Test
+    void closeFailsPendingPublishes() {
+        final var queue = new PublishQueue(CAPACITY, 1, SaturationPolicy.FAIL_FAST, this.workers::add);
+        final var first = queue.submit(this.publish(1));
+        final var second = queue.submit(this.publish(2));
+
+        queue.close();
+
+        assertRejected(first, "closed");
+        assertRejected(second, "closed");
+        assertRejected(queue.submit(this.publish(3)), "closed");
+        this.startWorkers();
+        assertTrue(this.published.isEmpty());
+    }
+
+    @Test
+    void completesInFlightPublishesAfterClose() throws Exception {
+        final var pending = new CompletableFuture<Long>();
+        final var queue = new PublishQueue(CAPACITY, 1, SaturationPolicy.FAIL_FAST, this.workers::add);
+        final var inFlight = queue.submit(() -> pending);
+        this.startWorkers();
+        // Wait until the worker took the publish off the queue.
+        final var marker = queue.submit(this.publish(1));
+        marker.get(5, TimeUnit.SECONDS);
+
+        queue.close();
+        pending.complete(7L);
+
+        assertEquals(7L, inFlight.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void propagatesPublishFailures() throws Exception {
+        try (final var queue = new PublishQueue(CAPACITY, 1, SaturationPolicy.FAIL_FAST, this.workers::add)) {
+            this.startWorkers();
+            final var failure = new IllegalStateException("publish failed");
+
+            final var thrown = queue.submit(() -> {
+                throw failure;
+            });
+            final var failed = queue.submit(() -> CompletableFuture.failedFuture(failure));
+
+            assertEquals(failure, assertThrows(ExecutionException.class, () -> thrown.get(5, TimeUnit.SECONDS)).getCause());
+            assertEquals(failure, assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS)).getCause());
+            assertEquals(3L, queue.submit(this.publish(3)).get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void rejectsInvalidSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new PublishQueue(0, 1, SaturationPolicy.BLOCK, this.workers::add));
+        assertThrows(IllegalArgumentException.class, () -> new PublishQueue(1, 0, SaturationPolicy.BLOCK, this.workers::add));
+    }
+
+    private Supplier<CompletableFuture<Long>> publish(final long receivers) {
+        return () -> {
+            this.published.add(receivers);
+            return CompletableFuture.completedFuture(receivers);
+        };
+    }
+
+    private void startWorkers() {
+        for (final var worker : this.workers) {
+            final var thread = new Thread(worker, "publish-worker");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private static void assertRejected(final CompletableFuture<Long> future, final String reason) {
+        assertTrue(future.isCompletedExceptionally(), "not rejected");
+        final var cause = assertThrows(ExecutionException.class, future::get).getCause();
+        assertInstanceOf(RejectedExecutionException.class, cause);
+        assertTrue(cause.getMessage().contains(reason), cause.getMessage());
+    }
+}
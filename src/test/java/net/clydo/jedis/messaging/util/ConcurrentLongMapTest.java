@@ -0,0 +1,207 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentLongMapTest {
+    // One stripe that never resizes below 48 entries, so keys sharing a home slot really collide.
+    private static final int CAPACITY = 64;
+
+    @Test
+    void storesCollidingKeys() {
+        final var map = new ConcurrentLongMap<String>(1, CAPACITY);
+        final var keys = collidingKeys(5, 7);
+        for (final var key : keys) {
+            assertNull(map.put(key, "v" + key));
+        }
+
+        for (final var key : keys) {
+            assertEquals("v" + key, map.get(key));
+        }
+        assertEquals("v" + keys.get(2), map.put(keys.get(2), "updated"));
+        assertEquals("updated", map.get(keys.get(2)));
+        assertEquals(5, map.size());
+
+        for (final var key : keys) {
+            assertTrue(map.remove(key) != null);
+            assertNull(map.get(key));
+        }
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void keepsProbeChainReachableAfterRemovingFromItsMiddle() {
+        final var map = new ConcurrentLongMap<Long>(1, CAPACITY);
+        final var keys = collidingKeys(4, 20);
+        // Keys homed on the following slots sit in and after the run, and must not move before their home.
+        final var neighbours = new ArrayList<Long>();
+        neighbours.addAll(collidingKeys(2, 21));
+        neighbours.addAll(collidingKeys(2, 23));
+        for (final var key : keys) {
+            map.put(key, key);
+        }
+        for (final var key : neighbours) {
+            map.put(key, key);
+        }
+
+        assertEquals(keys.get(1), map.remove(keys.get(1)));
+
+        assertNull(map.get(keys.get(1)));
+        for (final var key : List.of(keys.get(0), keys.get(2), keys.get(3))) {
+            assertEquals(key, map.get(key));
+        }
+        for (final var key : neighbours) {
+            assertEquals(key, map.get(key));
+        }
+        assertEquals(7, map.size());
+    }
+
+    @Test
+    void keepsChainsWrappingAroundTheTableReachable() {
+        final var map = new ConcurrentLongMap<Long>(1, CAPACITY);
+        final var keys = collidingKeys(4, CAPACITY - 1);
+        final var wrapped = collidingKeys(2, 0);
+        for (final var key : keys) {
+            map.put(key, key);
+        }
+        for (final var key : wrapped) {
+            map.put(key, key);
+        }
+
+        map.remove(keys.get(0));
+        map.remove(wrapped.get(0));
+
+        for (final var key : List.of(keys.get(1), keys.get(2), keys.get(3), wrapped.get(1))) {
+            assertEquals(key, map.get(key));
+        }
+    }
+
+    @Test
+    void resizesWhilePopulated() {
+        final var map = new ConcurrentLongMap<Long>(1, 2);
+        for (long key = 0; key < 10_000; key++) {
+            map.put(key, key);
+        }
+        for (long key = 0; key < 10_000; key += 2) {
+            assertEquals(key, map.remove(key));
+        }
+
+        assertEquals(5_000, map.size());
+        for (long key = 0; key < 10_000; key++) {
+            assertEquals(key % 2 == 0 ? null : key, map.get(key));
+        }
+    }
+
+    @Test
+    void storesZeroAndNegativeKeys() {
+        final var map = new ConcurrentLongMap<String>();
+        final var keys = new long[]{0, -1, -42, Long.MIN_VALUE, Long.MAX_VALUE};
+        for (final var key : keys) {
+            map.put(key, Long.toString(key));
+        }
+
+        for (final var key : keys) {
+            assertEquals(Long.toString(key), map.get(key));
+        }
+        assertEquals("0", map.remove(0));
+        assertNull(map.get(0));
+        assertEquals(Long.toString(Long.MIN_VALUE), map.get(Long.MIN_VALUE));
+    }
+
+    @Test
+    void removesOnlyTheExpectedValue() {
+        final var map = new ConcurrentLongMap<String>();
+        final var value = "value";
+        map.put(1, value);
+
+        assertFalse(map.remove(1, "other"));
+        assertEquals(value, map.get(1));
+        assertTrue(map.remove(1, value));
+        assertNull(map.get(1));
+    }
+
+    @Test
+    void behavesLikeHashMapUnderRandomOperations() {
+        final var map = new ConcurrentLongMap<Long>(2, 2);
+        final var expected = new HashMap<Long, Long>();
+        final var random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            // A small key range keeps the tables dense, with long probe runs and many removals.
+            final long key = random.nextInt(512) - 256;
+            switch (random.nextInt(3)) {
+                case 0 -> assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+                case 1 -> assertEquals(expected.remove(key), map.remove(key));
+                default -> assertEquals(expected.get(key), map.get(key));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+    }
+
+    @Test
+    void handlesConcurrentWriters() throws InterruptedException {
+        final var map = new ConcurrentLongMap<Long>();
+        final var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            final long base = t * 100_000L;
+            final var thread = new Thread(() -> {
+                for (long key = base; key < base + 10_000; key++) {
+                    map.put(key, key);
+                }
+                for (long key = base; key < base + 10_000; key += 2) {
+                    map.remove(key);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (final var thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(8 * 5_000, map.size());
+        assertEquals(100_001L, map.get(100_001L));
+        assertNull(map.get(100_000L));
+    }
+
+    private static List<Long> collidingKeys(final int count, final int home) {
+        final var keys = new ArrayList<Long>();
+        for (long key = 0; keys.size() < count; key++) {
+            if (((int) ConcurrentLongMap.hash(key) & (CAPACITY - 1)) == home) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+}
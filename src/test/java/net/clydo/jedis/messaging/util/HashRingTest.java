@@ -0,0 +1,80 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashRingTest {
+    private static final int KEYS = 100_000;
+    private static final List<String> NODES = List.of("redis-1", "redis-2", "redis-3", "redis-4");
+
+    @Test
+    void addingNodeOnlyMovesKeysToIt() {
+        final var ring = new HashRing(NODES, 160);
+        final var next = ring.with("redis-5");
+
+        var moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            final var key = "channel-" + i;
+            final var before = ring.nodeFor(key);
+            final var after = next.nodeFor(key);
+            if (!before.equals(after)) {
+                assertEquals("redis-5", after, key);
+                moved++;
+            }
+        }
+
+        // The new node takes over about 1 / 5 of all keys.
+        final var share = (double) moved / KEYS;
+        assertTrue(share > 0.15 && share < 0.25, "moved " + share);
+    }
+
+    @Test
+    void spreadsKeysEvenly() {
+        final var ring = new HashRing(NODES, 160);
+        final var counts = new HashMap<String, Integer>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.nodeFor("channel-" + i), 1, Integer::sum);
+        }
+
+        assertEquals(NODES.size(), counts.size());
+        for (final var count : counts.values()) {
+            final var share = (double) count / KEYS;
+            assertTrue(share > 0.2 && share < 0.3, "share " + share);
+        }
+    }
+
+    @Test
+    void placesKeysIndependentlyOfNodeOrder() {
+        final var ring = new HashRing(NODES, 160);
+        final var reversed = new HashRing(List.of("redis-4", "redis-3", "redis-2", "redis-1"), 160);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(ring.nodeFor("channel-" + i), reversed.nodeFor("channel-" + i));
+        }
+    }
+}
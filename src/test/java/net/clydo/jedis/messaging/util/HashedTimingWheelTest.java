@@ -0,0 +1,130 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedTimingWheelTest {
+    private final HashedTimingWheel wheel = new HashedTimingWheel(1, TimeUnit.MILLISECONDS, 8);
+
+    @AfterEach
+    void stop() {
+        this.wheel.close();
+    }
+
+    @Test
+    void expiresInDeadlineOrder() throws InterruptedException {
+        final var expired = new CopyOnWriteArrayList<Integer>();
+        final var done = new CountDownLatch(3);
+        for (final int delay : new int[]{60, 20, 40}) {
+            this.wheel.schedule(() -> {
+                expired.add(delay);
+                done.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(20, 40, 60), expired);
+    }
+
+    @Test
+    void cancelledTimeoutNeverRuns() throws InterruptedException {
+        final var ran = new AtomicBoolean();
+        final var timeout = this.wheel.schedule(() -> ran.set(true), 20, TimeUnit.MILLISECONDS);
+        final var later = new CountDownLatch(1);
+        this.wheel.schedule(later::countDown, 40, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(later.await(5, TimeUnit.SECONDS));
+        assertFalse(ran.get());
+        assertTrue(timeout.isCancelled());
+    }
+
+    @Test
+    void waitsForEveryRoundOfLongTimeouts() throws InterruptedException {
+        // 8 buckets of 1 ms, so this timeout passes its bucket several times before it is due.
+        final var start = System.nanoTime();
+        final var expiredAfter = new long[1];
+        final var done = new CountDownLatch(1);
+        final var timeout = this.wheel.schedule(() -> {
+            expiredAfter[0] = System.nanoTime() - start;
+            done.countDown();
+        }, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(expiredAfter[0] >= TimeUnit.MILLISECONDS.toNanos(50), "expired after " + expiredAfter[0] + " ns");
+        assertTrue(timeout.isExpired());
+    }
+
+    @Test
+    void stopReturnsUnprocessedTimeouts() {
+        final var ran = new AtomicBoolean();
+        final var first = this.wheel.schedule(() -> ran.set(true), 1, TimeUnit.MINUTES);
+        final var second = this.wheel.schedule(() -> ran.set(true), 2, TimeUnit.MINUTES);
+        final var cancelled = this.wheel.schedule(() -> ran.set(true), 3, TimeUnit.MINUTES);
+        cancelled.cancel();
+
+        final var unprocessed = this.wheel.stop();
+
+        assertEquals(2, unprocessed.size());
+        assertTrue(unprocessed.contains(first));
+        assertTrue(unprocessed.contains(second));
+        assertFalse(ran.get());
+    }
+
+    @Test
+    void stopReturnsTimeoutsOfWorkerThatNeverStarted() {
+        final var queued = new ArrayList<Runnable>();
+        final var idle = new HashedTimingWheel(1, TimeUnit.MILLISECONDS, 8, queued::add);
+        final var timeout = idle.schedule(() -> {
+        }, 1, TimeUnit.MILLISECONDS);
+
+        assertEquals(1, idle.stop().size());
+        assertFalse(timeout.isExpired());
+
+        // The worker must not start anymore once the wheel is stopped.
+        queued.forEach(Runnable::run);
+        assertFalse(timeout.isExpired());
+    }
+
+    @Test
+    void rejectsScheduleAfterClose() {
+        this.wheel.close();
+
+        assertThrows(IllegalStateException.class, () -> this.wheel.schedule(() -> {
+        }, 1, TimeUnit.MILLISECONDS));
+        assertTrue(this.wheel.stop().isEmpty());
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.jedis.messaging.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonScannerTest {
+
+    @Test
+    void readsMembersInOrder() {
+        final var scanner = scanner(" { \"s\" : \"text\" ,\n\"n\":-12, \"b\":true, \"f\":false, \"z\":null }");
+        scanner.beginObject();
+
+        assertTrue(scanner.nextMember());
+        assertEquals("s", scanner.nextName());
+        assertEquals("text", scanner.nextString());
+        assertTrue(scanner.nextMember());
+        assertEquals("n", scanner.nextName());
+        assertEquals(-12, scanner.nextLong());
+        assertTrue(scanner.nextMember());
+        assertEquals("b", scanner.nextName());
+        assertTrue(scanner.nextBoolean());
+        assertTrue(scanner.nextMember());
+        assertEquals("f", scanner.nextName());
+        assertFalse(scanner.nextBoolean());
+        assertTrue(scanner.nextMember());
+        assertEquals("z", scanner.nextName());
+        assertNull(scanner.nextString());
+        assertFalse(scanner.nextMember());
+    }
+
+    @Test
+    void readsEmptyObject() {
+        final var scanner = scanner("{ }");
+        scanner.beginObject();
+        assertFalse(scanner.nextMember());
+    }
+
+    @Test
+    void unescapesStrings() {
+        assertEquals("a\"b\\c/d\b\f\n\r\t", string("\"a\\\"b\\\\c\\/d\\b\\f\\n\\r\\t\""));
+        assertEquals("<player=join>", string("\"\\u003cplayer\\u003djoin\\u003e\""));
+        assertEquals("caf\u00e9 \ud83d\ude00", string("\"caf\\u00E9 \\ud83d\\ude00\""));
+        assertEquals("caf\u00e9 \u65e5\u672c \\", string("\"caf\u00e9 \u65e5\u672c \\\\\""));
+    }
+
+    @Test
+    void unescapesNames() {
+        final var scanner = scanner("{\"ev\\u0065nt\\n\":1}");
+        scanner.beginObject();
+        assertTrue(scanner.nextMember());
+        assertEquals("event\n", scanner.nextName());
+    }
+
+    @Test
+    void rejectsMalformedEscapes() {
+        for (final var json : new String[]{"\"\\u12\"", "\"\\u12g4\"", "\"\\u+123\"", "\"abc\\", "\"abc"}) {
+            assertThrows(IllegalArgumentException.class, () -> scanner(json).nextString(), json);
+        }
+    }
+
+    @Test
+    void readsLongs() {
+        assertEquals(0, scanner("0").nextLong());
+        assertEquals(Long.MAX_VALUE, scanner(Long.toString(Long.MAX_VALUE)).nextLong());
+        assertEquals(Long.MIN_VALUE, scanner(Long.toString(Long.MIN_VALUE)).nextLong());
+        assertEquals(1500, scanner("1.5e3").nextLong());
+        assertEquals(7, scanner("7.0").nextLong());
+        assertThrows(IllegalArgumentException.class, () -> scanner("\"7\"").nextLong());
+    }
+
+    @Test
+    void skipsNestedValues() {
+        final var json = "{\"data\":{\"a\":[1,{\"b\":\"}]\\\"{\"}],\"c\":{}},\"after\":1}";
+        final var scanner = scanner(json);
+        scanner.beginObject();
+        assertTrue(scanner.nextMember());
+        assertEquals("data", scanner.nextName());
+
+        final var start = scanner.skipValue();
+
+        assertEquals("{\"a\":[1,{\"b\":\"}]\\\"{\"}],\"c\":{}}", json.substring(start, scanner.getPosition()));
+        assertTrue(scanner.nextMember());
+        assertEquals("after", scanner.nextName());
+        assertEquals(1, scanner.nextLong());
+        assertFalse(scanner.nextMember());
+    }
+
+    @Test
+    void skipsEveryKindOfValue() {
+        for (final var value : new String[]{"\"s\\\"\"", "-1.5E+3", "true", "false", "null", "[]", "[[],[{}]]"}) {
+            final var scanner = scanner(value + " ");
+            assertEquals(0, scanner.skipValue());
+            assertEquals(value.length(), scanner.getPosition(), value);
+        }
+    }
+
+    @Test
+    void readsWithinTheGivenRange() {
+        final var bytes = "xx{\"a\":1}{\"b\":2}".getBytes(StandardCharsets.UTF_8);
+        final var scanner = new JsonScanner(bytes, 2, 7);
+        scanner.beginObject();
+        assertTrue(scanner.nextMember());
+        assertEquals("a", scanner.nextName());
+        assertEquals(1, scanner.nextLong());
+        assertFalse(scanner.nextMember());
+        assertThrows(IllegalArgumentException.class, () -> new JsonScanner(bytes, 2, 6).skipValue());
+    }
+
+    @Test
+    void rejectsMalformedInput() {
+        for (final var json : new String[]{"", "[]", "{\"a\"1}", "{\"a\":1,}", "{\"a\":{\"b\":1}", "{a:1}"}) {
+            assertThrows(IllegalArgumentException.class, () -> {
+                final var scanner = scanner(json);
+                scanner.beginObject();
+                while (scanner.nextMember()) {
+                    scanner.nextName();
+                    scanner.skipValue();
+                }
+            }, json);
+        }
+        assertThrows(IllegalArgumentException.class, () -> scanner("nul").nextString());
+        assertThrows(IllegalArgumentException.class, () -> scanner("tru").nextBoolean());
+    }
+
+    private static String string(final String json) {
+        return scanner(json).nextString();
+    }
+
+    private static JsonScanner scanner(final String json) {
+        return new JsonScanner(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
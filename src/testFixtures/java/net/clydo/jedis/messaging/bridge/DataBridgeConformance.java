@@ -0,0 +1,216 @@
+/*
+ * This file is part of JedisMessaging.
+ *
+ * JedisMessaging is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * JedisMessaging is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with JedisMessaging.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.jedis.messaging.bridge;
+
+import com.google.gson.Gson;
+import net.clydo.jedis.messaging.JedisMessaging;
+import net.clydo.jedis.messaging.bridge.gson.GsonDataBridge;
+import net.clydo.jedis.messaging.packet.Packet;
+import net.clydo.jedis.messaging.packet.PacketCodec;
+import net.clydo.jedis.messaging.packet.PacketType;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round trips every {@link DataBridge} has to pass, in each packet format it supports.
+ * Bridges that write JSON packets also have to be readable by, and read, the {@link GsonDataBridge}.
+ * <p>
+ * The tests tagged {@code performance} measure encode and decode throughput, they run with {@code performanceTest}.
+ */
+public abstract class DataBridgeConformance<D> {
+    private static final String SIGNATURE = "2f0c6a3e-8d4b-4c8e-9a55-6a1f0b7d2c11";
+    private static final int WARMUP_ITERATIONS = 50_000;
+    private static final int MEASURED_ITERATIONS = 200_000;
+
+    protected abstract DataBridge<D> bridge();
+
+    @Test
+    void roundTripsJsonPackets() {
+        Assumptions.assumeTrue(this.bridge().supportsJsonPackets());
+        this.assertRoundTrip(new PacketCodec<>(this.bridge(), false));
+    }
+
+    @Test
+    void roundTripsBinaryPackets() {
+        Assumptions.assumeTrue(this.bridge().supportsBinaryPackets());
+        this.assertRoundTrip(new PacketCodec<>(this.bridge(), true));
+    }
+
+    @Test
+    void roundTripsPrimitivesAndNull() {
+        for (final boolean binary : new boolean[]{false, true}) {
+            if (binary ? !this.bridge().supportsBinaryPackets() : !this.bridge().supportsJsonPackets()) {
+                continue;
+            }
+            final var codec = new PacketCodec<>(this.bridge(), binary);
+
+            assertEquals(42, this.roundTrip(codec, 42, Integer.class));
+            assertEquals("Zoë 😀 \"quoted\"\n", this.roundTrip(codec, "Zoë 😀 \"quoted\"\n", String.class));
+            assertArrayEquals(new int[]{1, 2, 3}, this.roundTrip(codec, new int[]{1, 2, 3}, int[].class));
+
+            final var decoded = codec.decodeLazy(codec.encode(new Packet<D>(SIGNATURE, PacketType.EVENT, "event", null, Packet.NO_CALLBACK, false)));
+            assertNull(this.bridge().dataAs(decoded.data(), Payload.class));
+        }
+    }
+
+    @Test
+    void isReadableByGson() {
+        Assumptions.assumeTrue(this.bridge().supportsJsonPackets());
+        final var bytes = new PacketCodec<>(this.bridge(), false).encode(this.packet(Payload.sample()));
+
+        final var gson = new GsonDataBridge(new Gson());
+        final var decoded = new PacketCodec<>(gson, false).decodeLazy(bytes);
+        assertEquals(Payload.sample(), gson.dataAs(decoded.data(), Payload.class));
+        assertEquals("event", decoded.event());
+    }
+
+    @Test
+    void readsGson() {
+        Assumptions.assumeTrue(this.bridge().supportsJsonPackets());
+        final var gson = new GsonDataBridge(new Gson());
+        final var bytes = new PacketCodec<>(gson, false).encode(new Packet<>(SIGNATURE, PacketType.EVENT, "event", gson.encodeData(Payload.sample()), 7L, true));
+
+        final var decoded = new PacketCodec<>(this.bridge(), false).decodeLazy(bytes);
+        assertEquals(Payload.sample(), this.bridge().dataAs(decoded.data(), Payload.class));
+        assertEquals(7L, decoded.callbackId());
+        assertTrue(decoded.skipSelf());
+    }
+
+    @Test
+    void rejectsUnsupportedPacketFormatsOnBuild() {
+        final JedisBridge unused = JedisBridge.create(() -> {
+            throw new AssertionError("Building must fail before connecting");
+        });
+        if (!this.bridge().supportsJsonPackets()) {
+            assertThrows(IllegalStateException.class, () -> JedisMessaging.builder(this.bridge()).jedisBridge(unused).build());
+        }
+        if (!this.bridge().supportsBinaryPackets()) {
+            assertThrows(IllegalStateException.class, () -> JedisMessaging.builder(this.bridge()).jedisBridge(unused).binaryPackets(true).build());
+        }
+    }
+
+    @Test
+    @Tag("performance")
+    void jsonThroughput() {
+        Assumptions.assumeTrue(this.bridge().supportsJsonPackets());
+        this.measure("JSON", new PacketCodec<>(this.bridge(), false));
+    }
+
+    @Test
+    @Tag("performance")
+    void binaryThroughput() {
+        Assumptions.assumeTrue(this.bridge().supportsBinaryPackets());
+        this.measure("binary", new PacketCodec<>(this.bridge(), true));
+    }
+
+    private void assertRoundTrip(final PacketCodec<D> codec) {
+        final var decoded = codec.decodeLazy(codec.encode(this.packet(Payload.sample())));
+
+        assertEquals(SIGNATURE, decoded.signature());
+        assertEquals(PacketType.EVENT.getId(), decoded.type());
+        assertEquals("event", decoded.event());
+        assertEquals(7L, decoded.callbackId());
+        assertTrue(decoded.skipSelf());
+        assertEquals(Payload.sample(), this.bridge().dataAs(decoded.data(), Payload.class));
+    }
+
+    private <T> T roundTrip(final PacketCodec<D> codec, final Object payload, final Class<T> as) {
+        return this.bridge().dataAs(codec.decodeLazy(codec.encode(this.packet(payload))).data(), as);
+    }
+
+    private Packet<D> packet(final Object payload) {
+        return new Packet<>(SIGNATURE, PacketType.EVENT, "event", this.bridge().encodeData(payload), 7L, true);
+    }
+
+    private void measure(final String format, final PacketCodec<D> codec) {
+        final var payload = Payload.sample();
+        long bytes = 0;
+        long start = 0;
+        for (int i = 0; i < WARMUP_ITERATIONS + MEASURED_ITERATIONS; i++) {
+            if (i == WARMUP_ITERATIONS) {
+                start = System.nanoTime();
+            }
+            final var encoded = codec.encode(this.packet(payload));
+            bytes += encoded.length;
+            assertEquals(payload.count, this.bridge().dataAs(codec.decodeLazy(encoded).data(), Payload.class).count);
+        }
+        final var elapsed = System.nanoTime() - start;
+
+        System.out.printf("%s %s: %,d round trips/s, %d bytes per packet%n",
+                this.bridge().getClass().getSimpleName(), format,
+                MEASURED_ITERATIONS * 1_000_000_000L / elapsed, bytes / (WARMUP_ITERATIONS + MEASURED_ITERATIONS));
+    }
+
+    /**
+     * Payload with public fields, so every bridge can bind it without configuration.
+     */
+    public static class Payload {
+        public String name;
+        public int count;
+        public double ratio;
+        public List<String> tags;
+        public Payload nested;
+
+        public static Payload sample() {
+            final var nested = new Payload();
+            nested.name = "nested";
+            nested.tags = List.of();
+
+            final var payload = new Payload();
+            payload.name = "Zoë 😀 \"quoted\"";
+            payload.count = 42;
+            payload.ratio = 0.25;
+            payload.tags = List.of("a", "b", "c");
+            payload.nested = nested;
+            return payload;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Payload other)) {
+                return false;
+            }
+            return this.count == other.count && Double.compare(this.ratio, other.ratio) == 0
+                    && Objects.equals(this.name, other.name) && Objects.equals(this.tags, other.tags) && Objects.equals(this.nested, other.nested);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.name, this.count, this.ratio, this.tags, this.nested);
+        }
+
+        @Override
+        public String toString() {
+            return "Payload{name=" + this.name + ", count=" + this.count + ", ratio=" + this.ratio + ", tags=" + this.tags + ", nested=" + this.nested + "}";
+        }
+    }
+}